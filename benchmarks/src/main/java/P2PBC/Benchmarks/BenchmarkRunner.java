@@ -0,0 +1,45 @@
+package P2PBC.Benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This class runs the benchmarks of the simulator. It accepts the same
+ * arguments of the JMH command line, but always enables the
+ * {@link GCProfiler}, which reports the allocation rate and the garbage
+ * collections of every benchmark, and writes the results as JSON to
+ * {@code jmh-result.json}, unless another format is given.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs the benchmarks selected by {@code args}, or all of them.
+     *
+     * @param args the JMH command line arguments.
+     * @throws Exception if the arguments are invalid or a benchmark fails.
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+
+        if (cmd.shouldHelp()) {
+            cmd.showHelp();
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd).addProfiler(GCProfiler.class);
+
+        if (!cmd.getResultFormat().hasValue())
+            options.resultFormat(ResultFormatType.JSON);
+
+        Runner runner = new Runner(options.build());
+
+        if (cmd.shouldList())
+            runner.list();
+        else
+            runner.run();
+    }
+}
@@ -0,0 +1,32 @@
+package P2PBC.Benchmarks;
+
+import P2PBC.Chord.Node;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class benchmarks {@link Node#buildNetwork}, i.e., the generation of
+ * the peers and the computation of their finger tables, across ring sizes
+ * and bit widths. Every measurement builds a whole network once.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildBenchmark {
+    @Param({"1024", "16384", "131072"})
+    private int nodes;
+
+    @Param({"32", "160"})
+    private int bits;
+
+    @Benchmark
+    public Collection<Node> buildNetwork() {
+        return Node.buildNetwork(bits, nodes);
+    }
+}
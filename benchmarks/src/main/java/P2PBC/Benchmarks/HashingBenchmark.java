@@ -0,0 +1,45 @@
+package P2PBC.Benchmarks;
+
+import P2PBC.Chord.HashFunction;
+import P2PBC.Chord.Identifier;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class benchmarks the creation of {@link Identifier}s by hashing the
+ * 8 bytes of a peer address (IPv4 address and port), for every
+ * {@link HashFunction}. Wide rings ({@code bits > 63}) always use the whole
+ * SHA-1 digest, regardless of the hash function.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashingBenchmark {
+    @Param({"32", "160"})
+    private int bits;
+
+    @Param({"SHA1", "MIX64", "XXHASH"})
+    private HashFunction hashFunction;
+
+    private final byte[] bytes = new byte[8];
+
+    @Setup
+    public void setUp() {
+        Identifier.setBitLength(bits);
+        Identifier.setHashFunction(hashFunction);
+        new Random(42).nextBytes(bytes);
+    }
+
+    @Benchmark
+    public Identifier hashAddress() {
+        bytes[7]++;
+
+        return new Identifier(bytes);
+    }
+}
@@ -0,0 +1,69 @@
+package P2PBC.Benchmarks;
+
+import P2PBC.Chord.Identifier;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class benchmarks the arithmetic of {@link Identifier}s, on compact
+ * ({@code bits <= 63}) and wide rings. Every invocation uses the next
+ * identifiers of a fixed random pool, so that the results cannot be folded
+ * into constants.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IdentifierBenchmark {
+    private static final int POOL_SIZE = 1024;
+
+    @Param({"16", "32", "63", "160"})
+    private int bits;
+
+    private Identifier[] ids;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Identifier.setBitLength(bits);
+        ids = new Identifier[POOL_SIZE + 2];
+
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = new Identifier(new BigInteger(bits, random));
+    }
+
+    @Benchmark
+    public boolean isBetween() {
+        int i = advance();
+
+        return ids[i].isBetween(ids[i + 1], ids[i + 2]);
+    }
+
+    @Benchmark
+    public Identifier add() {
+        int i = advance();
+
+        return ids[i].add(ids[i + 1]);
+    }
+
+    @Benchmark
+    public Identifier subtract() {
+        int i = advance();
+
+        return ids[i].subtract(ids[i + 1]);
+    }
+
+    // Returns the index of the next identifiers of the pool
+    private int advance() {
+        next = (next + 1) & (POOL_SIZE - 1);
+
+        return next;
+    }
+}
@@ -0,0 +1,58 @@
+package P2PBC.Benchmarks;
+
+import P2PBC.Chord.Identifier;
+import P2PBC.Chord.Node;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class benchmarks a single lookup through {@link Node#getPathTo},
+ * across ring sizes and bit widths. The network and a pool of random
+ * sources and keys are created once per trial, and the visitor only counts
+ * the hops, so that only the routing is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoutingBenchmark {
+    private static final int POOL_SIZE = 4096;
+
+    @Param({"1024", "65536"})
+    private int nodes;
+
+    @Param({"32", "63", "160"})
+    private int bits;
+
+    private Node[] sources;
+    private Identifier[] keys;
+    private int next = 0;
+    private int hops = 0;
+    private final Consumer<Node> counter = node -> hops++;
+
+    @Setup
+    public void setUp() {
+        Node[] network = Node.buildNetwork(bits, nodes).toArray(new Node[0]);
+        Random random = new Random(42);
+        sources = new Node[POOL_SIZE];
+        keys = new Identifier[POOL_SIZE];
+
+        for (int i = 0; i < POOL_SIZE; i++) {
+            sources[i] = network[random.nextInt(network.length)];
+            keys[i] = Identifier.ofKey(random.nextLong());
+        }
+    }
+
+    @Benchmark
+    public Node getPathTo() {
+        next = (next + 1) & (POOL_SIZE - 1);
+
+        return sources[next].getPathTo(keys[next], counter);
+    }
+}
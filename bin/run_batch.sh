@@ -7,20 +7,22 @@ ITERS=32768
 BITS=16
 GRAPH_DIR="../data/graphs/"
 LOG_DIR="../data/logs/"
-LOG_FILE="${LOG_DIR}/log.json"
+LOG_FILE="${LOG_DIR}/log.jsonl"
+JAR="../target/P2PBC-midterm-1.0-SNAPSHOT-all.jar"
+
+if [ ! -f ${JAR} ]; then
+    echo "${JAR} not found, build it with 'mvn package' first." >&2
+    exit 1
+fi
 
 mkdir -p ${GRAPH_DIR}
 mkdir -p ${LOG_DIR}
 > ${LOG_FILE}
 
-for i in `seq 1 ${BITS}`; do
-    echo -e "\n --- Executing ${ITERS} simulations on ${NODES} nodes ---"
-    java -jar P2PBC-midterm.jar \
-            -n ${NODES} \
-            -l ${ITERS} \
-            -b ${BITS} \
-            -s ${GRAPH_DIR}/graph_${NODES}_nodes.sif \
-            -o ${LOG_FILE}
-    NODES=$((NODES*2))
-    ITERS=$((ITERS/2))
-done
+java -jar ${JAR} \
+        --sweep nodes=${NODES}..$((NODES << (BITS - 1))):x2,lookups=${ITERS}..$((ITERS >> (BITS - 1))):/2 \
+        -b ${BITS} \
+        -s "${GRAPH_DIR}/graph_{nodes}_nodes.sif" \
+        -o ${LOG_FILE}
+
+java -jar ${JAR} -o ${LOG_FILE} --convert ${LOG_DIR}/log.json
@@ -0,0 +1,54 @@
+package P2PBC.Chord;
+
+import java.util.Arrays;
+
+/**
+ * This {@link RoutingTable} generalizes the Chord fingers to base {@code k}:
+ * at every level {@code l}, a node keeps the successors of
+ * {@code id + j*k^l} for {@code j} from 1 to {@code k - 1}, so every hop
+ * divides the distance to the key by {@code k}. Lookups take about
+ * {@code log_k(n)} hops, with {@code (k - 1)*log_k(n)} entries per node. In
+ * base 2 the entries are the fingers of a {@link Ring}.
+ */
+public class BaseRoutingTable extends GreedyRoutingTable {
+    private static final int MAX_BASE = 1 << 16;
+
+    private final long[] distances;
+
+    /**
+     * Creates the routing tables in base {@code k} of the given sorted
+     * identifiers.
+     *
+     * @param ids the sorted raw identifiers of the nodes.
+     * @param k the base of the fingers.
+     * @throws IllegalArgumentException if {@code k} is not between 2 and
+     * 2^16.
+     */
+    public BaseRoutingTable(long[] ids, int k) {
+        super(ids);
+
+        if (k < 2 || k > MAX_BASE)
+            throw new IllegalArgumentException("The base must be between 2 and " + MAX_BASE + ".");
+
+        long max = (1L << Identifier.getBitLength()) - 1;
+        long[] result = new long[64*(k - 1)];
+        int count = 0;
+
+        // Stops before any distance reaches 2^bits, i.e., wraps the ring
+        for (long power = 1; ; power *= k) {
+            for (long j = 1; j < k && j <= max/power; j++)
+                result[count++] = j*power;
+
+            if (power > max/k)
+                break;
+        }
+
+        distances = Arrays.copyOf(result, count);
+        build();
+    }
+
+    @Override
+    long[] distances(int node) {
+        return distances;
+    }
+}
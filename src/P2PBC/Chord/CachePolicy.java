@@ -0,0 +1,63 @@
+package P2PBC.Chord;
+
+/**
+ * This enum lists the eviction policies of the {@link RouteCache}s of the
+ * {@link Node}s.
+ */
+public enum CachePolicy {
+    /**
+     * Evicts the least recently used route.
+     */
+    LRU {
+        @Override
+        public RouteCache create(int capacity) {
+            return new LruRouteCache(capacity);
+        }
+    },
+
+    /**
+     * Evicts the least frequently used route, breaking ties by recency.
+     */
+    LFU {
+        @Override
+        public RouteCache create(int capacity) {
+            return new LfuRouteCache(capacity);
+        }
+    },
+
+    /**
+     * Evicts the least recently used route, but admits a new route only if
+     * it has been looked up more often than the evicted one, according to a
+     * compact frequency sketch of the recent lookups.
+     */
+    TINYLFU {
+        @Override
+        public RouteCache create(int capacity) {
+            return new TinyLfuRouteCache(capacity);
+        }
+    };
+
+    /**
+     * Creates an empty {@link RouteCache} with this eviction policy.
+     *
+     * @param capacity the maximum number of routes in the cache.
+     * @return a new {@link RouteCache}.
+     */
+    public abstract RouteCache create(int capacity);
+
+    /**
+     * Parses a cache policy by its (case-insensitive) name.
+     *
+     * @param name the name of the policy.
+     * @return the corresponding {@link CachePolicy}.
+     * @throws IllegalArgumentException if there is no policy with the given
+     * name.
+     */
+    public static CachePolicy parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown cache policy: " + name);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package P2PBC.Chord;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * This class exports a {@link Network} as a graph file, in one of the
+ * {@link GraphFormat}s, where every node is linked to its fingers. The ring
+ * is split into contiguous segments, which are rendered in parallel, each one
+ * into a reusable byte buffer, and then written in order to the output
+ * stream. The identifiers are converted to text directly into the buffers,
+ * and repeated fingers are skipped by scanning the fingers already written,
+ * so no object is allocated per node or per edge.
+ */
+public class GraphExporter {
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Network network;
+    private final int bits;
+    private final int maxFingers;
+    private final long[] ids;
+    private final byte[][] labels;
+
+    /**
+     * Creates a new {@link GraphExporter} of the given {@link Network}, using
+     * the current bit length.
+     *
+     * @param network the {@link Network} to export.
+     */
+    public GraphExporter(Network network) {
+        int size = network.size();
+        this.network = network;
+        this.bits = Identifier.getBitLength();
+        maxFingers = IntStream.range(0, size).parallel().map(network::getFingerCount).max().orElse(0);
+
+        // Identifiers that fit in a long are printed on the fly, the others
+        // are converted to text once
+        if (Identifier.isCompact()) {
+            ids = new long[size];
+            labels = null;
+            IntStream.range(0, size).parallel().forEach(i -> ids[i] = network.getIdentifier(i).longValue());
+        } else {
+            ids = null;
+            labels = new byte[size][];
+            IntStream.range(0, size).parallel().forEach(i ->
+                    labels[i] = network.getIdentifier(i).toString().getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Writes the network in the given format to {@code out}. The stream is
+     * not closed.
+     *
+     * @param out the stream where the graph will be written.
+     * @param format the {@link GraphFormat} of the graph.
+     * @param asMultigraph If {@code true}, writes the network as it is, otherwise
+     *                     ignores duplicated edges.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(OutputStream out, GraphFormat format, boolean asMultigraph) throws IOException {
+        int size = network.size();
+        int segments = (int) ((size + (long) SEGMENT_SIZE - 1)/SEGMENT_SIZE);
+        Buffer[] buffers = new Buffer[Math.max(1, Math.min(Runtime.getRuntime().availableProcessors()*4, segments))];
+
+        for (int i = 0; i < buffers.length; i++)
+            buffers[i] = new Buffer();
+
+        format.writeHeader(buffers[0], bits, size);
+        buffers[0].writeTo(out);
+
+        // Every round renders one segment per buffer, in parallel, and then
+        // writes the buffers in order
+        for (int first = 0; first < segments; first += buffers.length) {
+            int start = first, round = Math.min(buffers.length, segments - first);
+
+            IntStream.range(0, round).parallel().forEach(s -> render(buffers[s], format, asMultigraph,
+                    (start + s)*SEGMENT_SIZE, (int) Math.min((long) (start + s + 1)*SEGMENT_SIZE, size)));
+
+            for (int s = 0; s < round; s++)
+                buffers[s].writeTo(out);
+        }
+
+        format.writeFooter(buffers[0]);
+        buffers[0].writeTo(out);
+        out.flush();
+    }
+
+    // Renders the nodes in the range [from, to) into the buffer
+    private void render(Buffer buffer, GraphFormat format, boolean asMultigraph, int from, int to) {
+        int[] fingers = buffer.fingers;
+
+        for (int node = from; node < to; node++) {
+            int count = 0;
+
+            for (int i = 0; i < network.getFingerCount(node); i++) {
+                int finger = network.getFinger(node, i);
+
+                if (asMultigraph || !contains(fingers, count, finger))
+                    fingers[count++] = finger;
+            }
+
+            format.writeNode(buffer, node, fingers, count);
+        }
+    }
+
+    // Checks whether the finger is among the first count ones. The fingers
+    // are usually sorted, so the last one is checked first
+    private static boolean contains(int[] fingers, int count, int finger) {
+        for (int i = count - 1; i >= 0; i--)
+            if (fingers[i] == finger)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * A growable byte buffer, where a segment of the graph is rendered as
+     * ASCII text.
+     */
+    final class Buffer {
+        private final int[] fingers = new int[maxFingers];
+        private final byte[] digits = new byte[20];
+        private byte[] bytes = new byte[BUFFER_SIZE];
+        private int length = 0;
+
+        // Appends a character, which must be ASCII
+        Buffer put(char c) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) c;
+
+            return this;
+        }
+
+        // Appends a string, which must be ASCII
+        Buffer put(String string) {
+            ensureCapacity(string.length());
+
+            for (int i = 0; i < string.length(); i++)
+                bytes[length++] = (byte) string.charAt(i);
+
+            return this;
+        }
+
+        // Appends a non-negative number in decimal
+        Buffer putLong(long value) {
+            int count = 0;
+
+            do {
+                digits[count++] = (byte) ('0' + value%10);
+                value /= 10;
+            } while (value > 0);
+
+            ensureCapacity(count);
+
+            while (count > 0)
+                bytes[length++] = digits[--count];
+
+            return this;
+        }
+
+        // Appends the identifier of the node in decimal
+        Buffer putId(int node) {
+            if (ids != null)
+                return putLong(ids[node]);
+
+            ensureCapacity(labels[node].length);
+            System.arraycopy(labels[node], 0, bytes, length, labels[node].length);
+            length += labels[node].length;
+
+            return this;
+        }
+
+        // Appends the address of the node, as InetSocketAddress.toString()
+        // does for addresses without host name
+        Buffer putAddress(int node) {
+            InetSocketAddress address = network.getAddress(node);
+
+            if (!(address.getAddress() instanceof Inet4Address))
+                return put(address.toString());
+
+            byte[] octets = address.getAddress().getAddress();
+            put('/');
+
+            for (int i = 0; i < 4; i++)
+                (i == 0? this : put('.')).putLong(octets[i] & 0xFF);
+
+            return put(':').putLong(address.getPort());
+        }
+
+        // Writes the content of the buffer to the stream and clears it
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, length);
+            length = 0;
+        }
+
+        // Grows the buffer, if needed, to append count more bytes
+        private void ensureCapacity(int count) {
+            if (length + count > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(2*bytes.length, length + count));
+        }
+    }
+}
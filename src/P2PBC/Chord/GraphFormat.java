@@ -0,0 +1,120 @@
+package P2PBC.Chord;
+
+/**
+ * This enum lists the file formats in which a {@link GraphExporter} can write
+ * a {@link Network}, as a directed graph where every node is linked to its
+ * fingers. Nodes are named by their {@link Identifier}.
+ */
+public enum GraphFormat {
+    /**
+     * The Simple Interaction Format, with a line {@code id link f1 f2 ...}
+     * for every node.
+     */
+    SIF {
+        @Override
+        void writeNode(GraphExporter.Buffer buffer, int node, int[] fingers, int count) {
+            buffer.putId(node).put(" link");
+
+            for (int i = 0; i < count; i++)
+                buffer.put(' ').putId(fingers[i]);
+
+            buffer.put('\n');
+        }
+    },
+
+    /**
+     * The Graphviz DOT format, where every node is labelled with its address.
+     */
+    DOT {
+        @Override
+        void writeHeader(GraphExporter.Buffer buffer, int bits, int nodes) {
+            buffer.put("// BITS: ").putLong(bits).put("\n// NODES: ").putLong(nodes)
+                    .put("\n\ndigraph network {\n");
+        }
+
+        @Override
+        void writeNode(GraphExporter.Buffer buffer, int node, int[] fingers, int count) {
+            buffer.put('\t').putId(node).put(" [label=\"").putAddress(node).put("\"]; ").putId(node).put(" -> {");
+
+            for (int i = 0; i < count; i++)
+                buffer.put(' ').putId(fingers[i]);
+
+            buffer.put(" }\n");
+        }
+
+        @Override
+        void writeFooter(GraphExporter.Buffer buffer) {
+            buffer.put("}\n");
+        }
+    },
+
+    /**
+     * The GraphML format, where every node has its address as attribute.
+     */
+    GRAPHML {
+        @Override
+        void writeHeader(GraphExporter.Buffer buffer, int bits, int nodes) {
+            buffer.put("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- BITS: ").putLong(bits)
+                    .put(", NODES: ").putLong(nodes)
+                    .put(" -->\n<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n")
+                    .put("  <key id=\"address\" for=\"node\" attr.name=\"address\" attr.type=\"string\"/>\n")
+                    .put("  <graph id=\"network\" edgedefault=\"directed\">\n");
+        }
+
+        @Override
+        void writeNode(GraphExporter.Buffer buffer, int node, int[] fingers, int count) {
+            buffer.put("    <node id=\"").putId(node).put("\"><data key=\"address\">").putAddress(node)
+                    .put("</data></node>\n");
+
+            for (int i = 0; i < count; i++)
+                buffer.put("    <edge source=\"").putId(node).put("\" target=\"").putId(fingers[i]).put("\"/>\n");
+        }
+
+        @Override
+        void writeFooter(GraphExporter.Buffer buffer) {
+            buffer.put("  </graph>\n</graphml>\n");
+        }
+    },
+
+    /**
+     * A plain edge list, with a line {@code id finger} for every edge, after
+     * a header of comments starting with {@code #}.
+     */
+    EDGES {
+        @Override
+        void writeHeader(GraphExporter.Buffer buffer, int bits, int nodes) {
+            buffer.put("# BITS: ").putLong(bits).put("\n# NODES: ").putLong(nodes).put('\n');
+        }
+
+        @Override
+        void writeNode(GraphExporter.Buffer buffer, int node, int[] fingers, int count) {
+            for (int i = 0; i < count; i++)
+                buffer.putId(node).put(' ').putId(fingers[i]).put('\n');
+        }
+    };
+
+    /**
+     * Parses a graph format by its (case-insensitive) name.
+     *
+     * @param name the name of the format.
+     * @return the corresponding {@link GraphFormat}.
+     * @throws IllegalArgumentException if there is no format with the given
+     * name.
+     */
+    public static GraphFormat parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown graph format: " + name);
+        }
+    }
+
+    // Writes what precedes the nodes
+    void writeHeader(GraphExporter.Buffer buffer, int bits, int nodes) {}
+
+    // Writes a node and its fingers
+    abstract void writeNode(GraphExporter.Buffer buffer, int node, int[] fingers, int count);
+
+    // Writes what follows the nodes
+    void writeFooter(GraphExporter.Buffer buffer) {}
+}
@@ -0,0 +1,115 @@
+package P2PBC.Chord;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * This class is a {@link RoutingTable} whose lookups are routed greedily, as
+ * in Chord: every hop goes to the entry that most closely precedes the key.
+ * The distinct entries of every node are stored in a single array, sorted by
+ * increasing distance from the node, with the offsets of the nodes in a
+ * second one, as in a {@link Ring}. Subclasses only choose the distances of
+ * the entries.
+ */
+abstract class GreedyRoutingTable implements RoutingTable {
+    final long[] ids;
+    private final int[] offsets;
+    private int[] entries;
+
+    // Creates the routing tables of the given sorted ids, whose entries are
+    // added by the subclass
+    GreedyRoutingTable(long[] ids) {
+        this.ids = ids;
+        offsets = new int[ids.length + 1];
+        entries = new int[ids.length];
+    }
+
+    // Computes the entries of every node, i.e., the successors of the node
+    // at the distances given by distances(node)
+    final void build() {
+        for (int node = 0; node < ids.length; node++) {
+            long[] distances = distances(node);
+            int count = offsets[node];
+            Arrays.sort(distances);
+
+            for (long distance : distances) {
+                int entry = successor(Identifier.add(ids[node], distance));
+
+                // Entries are sorted by distance, so repeated ones are
+                // adjacent, and the node itself can only be the last one
+                if (count > offsets[node] && entries[count - 1] == entry)
+                    continue;
+
+                if (count == entries.length)
+                    entries = Arrays.copyOf(entries, 2*count);
+
+                entries[count++] = entry;
+            }
+
+            offsets[node + 1] = count;
+        }
+
+        entries = Arrays.copyOf(entries, offsets[ids.length]);
+    }
+
+    // Returns the distances of the entries of the node, including 1 for its
+    // successor. Every distance must be in [1, 2^bits)
+    abstract long[] distances(int node);
+
+    // Returns the index of the first node at or after the position
+    final int successor(long position) {
+        int index = Arrays.binarySearch(ids, position);
+
+        return (index < 0? -index - 1 : index) % ids.length;
+    }
+
+    @Override
+    public int getEntryCount(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    @Override
+    public int getEntry(int node, int i) {
+        return entries[offsets[node] + i];
+    }
+
+    @Override
+    public boolean isGreedy() {
+        return true;
+    }
+
+    @Override
+    public int route(int source, long position, IntConsumer visitor) {
+        int node = source;
+
+        while (true) {
+            visitor.accept(node);
+            long id = ids[node];
+
+            if (Identifier.isBetween(position, ids[(node + ids.length - 1) % ids.length], id))
+                return node;
+
+            int successor = entries[offsets[node]];
+
+            if (Identifier.isBetween(position, id, ids[successor])) {
+                visitor.accept(successor);
+
+                return successor;
+            }
+
+            int next = node;
+
+            for (int i = offsets[node + 1] - 1; i >= offsets[node]; i--)
+                if (Identifier.isBetween(ids[entries[i]], id, position)) {
+                    next = entries[i];
+                    break;
+                }
+
+            // Stops when the network is circular
+            if (next == node)
+                return node;
+
+            node = next;
+        }
+    }
+}
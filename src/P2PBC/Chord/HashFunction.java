@@ -0,0 +1,242 @@
+package P2PBC.Chord;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This enum lists the hash functions that can be used to map keys and peer
+ * addresses to positions in the Chord ring. Every function returns a 64-bit
+ * hash, whose most significant bits are used as ring position. None of the
+ * functions allocates objects and all of them are thread-safe.
+ */
+public enum HashFunction {
+    /**
+     * The SHA-1 cryptographic hash function, truncated to its first 64 bits.
+     * Each thread uses its own {@link MessageDigest} instance.
+     */
+    SHA1 {
+        @Override
+        public long hash(byte[] bytes, int offset, int length) {
+            Sha1 sha1 = SHA1_STATE.get();
+            sha1.digest.update(bytes, offset, length);
+
+            return sha1.digest();
+        }
+
+        @Override
+        public long hash(long key) {
+            Sha1 sha1 = SHA1_STATE.get();
+
+            for (int i = 0; i < 8; i++)
+                sha1.key[i] = (byte) (key >>> (56 - 8*i));
+
+            sha1.digest.update(sha1.key, 0, 8);
+
+            return sha1.digest();
+        }
+    },
+
+    /**
+     * A fast, non-cryptographic 64-bit mixer (the SplitMix64 finalizer).
+     */
+    MIX64 {
+        @Override
+        public long hash(byte[] bytes, int offset, int length) {
+            long h = length*GOLDEN_GAMMA;
+            int i = offset, end = offset + length;
+
+            for (; i + 8 <= end; i += 8)
+                h = mix(h ^ readLong(bytes, i));
+
+            long tail = 0;
+
+            for (int shift = 0; i < end; i++, shift += 8)
+                tail |= (bytes[i] & 0xFFL) << shift;
+
+            return mix(h ^ tail);
+        }
+
+        // The same as hashing the 8 bytes of the key, which are read back in
+        // little-endian order, followed by an empty tail
+        @Override
+        public long hash(long key) {
+            return mix(mix(8*GOLDEN_GAMMA ^ Long.reverseBytes(key)));
+        }
+    },
+
+    /**
+     * The xxHash64 non-cryptographic hash function, with seed 0.
+     */
+    XXHASH {
+        @Override
+        public long hash(byte[] bytes, int offset, int length) {
+            int i = offset, end = offset + length;
+            long h;
+
+            if (length >= 32) {
+                long v1 = P1 + P2, v2 = P2, v3 = 0, v4 = -P1;
+
+                for (; i + 32 <= end; i += 32) {
+                    v1 = round(v1, readLong(bytes, i));
+                    v2 = round(v2, readLong(bytes, i + 8));
+                    v3 = round(v3, readLong(bytes, i + 16));
+                    v4 = round(v4, readLong(bytes, i + 24));
+                }
+
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                        + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = merge(h, v1);
+                h = merge(h, v2);
+                h = merge(h, v3);
+                h = merge(h, v4);
+            } else {
+                h = P5;
+            }
+
+            h += length;
+
+            for (; i + 8 <= end; i += 8)
+                h = Long.rotateLeft(h ^ round(0, readLong(bytes, i)), 27)*P1 + P4;
+
+            if (i + 4 <= end) {
+                h = Long.rotateLeft(h ^ (readInt(bytes, i) & 0xFFFFFFFFL)*P1, 23)*P2 + P3;
+                i += 4;
+            }
+
+            for (; i < end; i++)
+                h = Long.rotateLeft(h ^ (bytes[i] & 0xFFL)*P5, 11)*P1;
+
+            return avalanche(h);
+        }
+
+        @Override
+        public long hash(long key) {
+            long h = P5 + 8;
+            h = Long.rotateLeft(h ^ round(0, Long.reverseBytes(key)), 27)*P1 + P4;
+
+            return avalanche(h);
+        }
+    };
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+    private static final ThreadLocal<Sha1> SHA1_STATE = ThreadLocal.withInitial(Sha1::new);
+
+    /**
+     * Hashes {@code length} bytes of the given array, starting from
+     * {@code offset}.
+     *
+     * @param bytes the byte array to be hashed.
+     * @param offset the index of the first byte to be hashed.
+     * @param length the number of bytes to be hashed.
+     * @return the 64-bit hash of the bytes.
+     */
+    public abstract long hash(byte[] bytes, int offset, int length);
+
+    /**
+     * Hashes the given {@code long} key. This is the same as hashing the 8
+     * bytes of the key in big-endian order, so that the identifier of a peer
+     * only depends on its address.
+     *
+     * @param key the key to be hashed.
+     * @return the 64-bit hash of the key.
+     */
+    public abstract long hash(long key);
+
+    /**
+     * Parses a hash function by its (case-insensitive) name.
+     *
+     * @param name the name of the hash function.
+     * @return the corresponding {@link HashFunction}.
+     * @throws IllegalArgumentException if there is no hash function with the
+     * given name.
+     */
+    public static HashFunction parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown hash function: " + name);
+        }
+    }
+
+    // Computes the whole SHA-1 digest of the given bytes, allocating it
+    static byte[] sha1(byte[] bytes) {
+        return SHA1_STATE.get().digest.digest(bytes);
+    }
+
+    // The SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30))*0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27))*0x94D049BB133111EBL;
+
+        return z ^ (z >>> 31);
+    }
+
+    // xxHash64 accumulator round
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input*P2, 31)*P1;
+    }
+
+    // xxHash64 accumulator merge
+    private static long merge(long acc, long value) {
+        return (acc ^ round(0, value))*P1 + P4;
+    }
+
+    // xxHash64 final mix
+    private static long avalanche(long h) {
+        h = (h ^ (h >>> 33))*P2;
+        h = (h ^ (h >>> 29))*P3;
+
+        return h ^ (h >>> 32);
+    }
+
+    // Reads a little-endian long
+    private static long readLong(byte[] bytes, int i) {
+        return (bytes[i] & 0xFFL) | (bytes[i + 1] & 0xFFL) << 8 | (bytes[i + 2] & 0xFFL) << 16
+                | (bytes[i + 3] & 0xFFL) << 24 | (bytes[i + 4] & 0xFFL) << 32 | (bytes[i + 5] & 0xFFL) << 40
+                | (bytes[i + 6] & 0xFFL) << 48 | (bytes[i + 7] & 0xFFL) << 56;
+    }
+
+    // Reads a little-endian int
+    private static int readInt(byte[] bytes, int i) {
+        return (bytes[i] & 0xFF) | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF) << 16
+                | (bytes[i + 3] & 0xFF) << 24;
+    }
+
+    // Per-thread SHA-1 state, with reusable buffers
+    private static class Sha1 {
+        private final MessageDigest digest;
+        private final byte[] buffer;
+        private final byte[] key = new byte[8];
+
+        private Sha1() {
+            try {
+                digest = MessageDigest.getInstance("SHA");
+                buffer = new byte[digest.getDigestLength()];
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // Completes the digest and returns its first 64 bits, big-endian
+        private long digest() {
+            try {
+                digest.digest(buffer, 0, buffer.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+
+            long prefix = 0;
+
+            for (int i = 0; i < 8; i++)
+                prefix = (prefix << 8) | (buffer[i] & 0xFF);
+
+            return prefix;
+        }
+    }
+}
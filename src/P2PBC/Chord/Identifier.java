@@ -1,26 +1,30 @@
 package P2PBC.Chord;
 
 import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 /**
  * This class represent either a {@link Node} in the Chord network or a key,
  * and provides the basic modular arithmetic operations that will be used in
  * the Chord routing algorithm.
+ *
+ * Identifiers of at most {@link Identifier#MAX_COMPACT_BITS} bits are stored
+ * as raw {@code long} values and all the arithmetic is done with bit masks,
+ * without allocating any intermediate object. Wider identifiers fall back to
+ * {@link BigInteger} arithmetic behind the same API.
  */
 public class Identifier implements Comparable<Identifier> {
+    /**
+     * The maximum bit length handled by the primitive {@code long} engine.
+     */
+    public static final int MAX_COMPACT_BITS = 63;
+
     private static int bits = 8;
+    private static long mask = (1L << bits) - 1;
     private static BigInteger base = BigInteger.ONE.shiftLeft(bits);
-    private static MessageDigest digest;
+    private static HashFunction hashFunction = HashFunction.SHA1;
+    private final long value;
     private final BigInteger id;
 
-    static {
-        try {
-            digest = MessageDigest.getInstance("SHA");
-        } catch (NoSuchAlgorithmException ignore) {}
-    }
-
     /**
      * Sets the number of bits of each {@link Identifier}. Every sequent
      * arithmetical operation will be done in modulo 2^{@code length}.
@@ -29,6 +33,7 @@ public class Identifier implements Comparable<Identifier> {
      */
     public static void setBitLength(int length) {
         bits = length;
+        mask = length < 64? (1L << length) - 1 : -1L;
         base = BigInteger.ONE.shiftLeft(bits);
     }
 
@@ -41,6 +46,112 @@ public class Identifier implements Comparable<Identifier> {
         return bits;
     }
 
+    /**
+     * Sets the {@link HashFunction} used to map keys to {@link Identifier}s.
+     * Identifiers wider than {@link Identifier#MAX_COMPACT_BITS} bits are
+     * always generated using the whole SHA-1 digest.
+     *
+     * @param function the new hash function.
+     */
+    public static void setHashFunction(HashFunction function) {
+        hashFunction = function;
+    }
+
+    /**
+     * Returns the current hash function.
+     *
+     * @return the current {@link HashFunction}.
+     */
+    public static HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Maps the given key to its raw position in the ring, using the current
+     * {@link HashFunction}, without allocating any object. Valid only if
+     * {@link Identifier#isCompact()} holds.
+     *
+     * @param key the key to be hashed.
+     * @return the most significant {@link Identifier#getBitLength()} bits of
+     * the hash of {@code key}.
+     */
+    public static long position(long key) {
+        return hashFunction.hash(key) >>> (64 - bits);
+    }
+
+    /**
+     * Generates a new {@link Identifier} by hashing the given {@code long}
+     * key, as if it was an array of 8 bytes in big-endian order.
+     *
+     * @param key the key to be hashed.
+     * @return the {@link Identifier} of the key.
+     */
+    public static Identifier ofKey(long key) {
+        if (isCompact())
+            return new Identifier(position(key));
+
+        byte[] bytes = new byte[8];
+
+        for (int i = 0; i < 8; i++)
+            bytes[i] = (byte) (key >>> (56 - 8*i));
+
+        return new Identifier(bytes);
+    }
+
+    /**
+     * Checks whether the current bit length can be handled by the primitive
+     * {@code long} engine, i.e., if it is at most
+     * {@link Identifier#MAX_COMPACT_BITS}.
+     *
+     * @return {@code true} if the {@link Identifier}s are stored as
+     * {@code long}s, {@code false} if they fall back to {@link BigInteger}s.
+     */
+    public static boolean isCompact() {
+        return bits <= MAX_COMPACT_BITS;
+    }
+
+    /**
+     * Performs a modular addition between two raw identifier values. Valid
+     * only if {@link Identifier#isCompact()} holds.
+     *
+     * @param left the first operand.
+     * @param right the second operand.
+     * @return {@code left + right mod 2^}{@link Identifier#getBitLength()}.
+     */
+    public static long add(long left, long right) {
+        return (left + right) & mask;
+    }
+
+    /**
+     * Performs a modular subtraction between two raw identifier values. Valid
+     * only if {@link Identifier#isCompact()} holds.
+     *
+     * @param left the first operand.
+     * @param right the second operand.
+     * @return {@code left - right mod 2^}{@link Identifier#getBitLength()}.
+     */
+    public static long subtract(long left, long right) {
+        return (left - right) & mask;
+    }
+
+    /**
+     * Checks if the raw identifier {@code value} is between {@code left}
+     * (excluded) and {@code right} (included), with the same semantics of
+     * {@link Identifier#isBetween(Identifier, Identifier)}. Valid only if
+     * {@link Identifier#isCompact()} holds.
+     *
+     * @param value the value to be checked.
+     * @param left the left bound of the interval, excluded.
+     * @param right the right bound of the interval, included.
+     * @return {@code true} if {@code 0 < value - left <= right - left mod 2^}
+     * {@link Identifier#getBitLength()}, {@code false} otherwise.
+     */
+    public static boolean isBetween(long value, long left, long right) {
+        long gap = (value - left) & mask;
+
+        return gap != 0 && gap <= ((right - left) & mask);
+    }
+
     /**
      * Creates a new {@link Identifier} by the given {@link BigInteger}.
      *
@@ -48,17 +159,46 @@ public class Identifier implements Comparable<Identifier> {
      *                   2^{@link Identifier#getBitLength()}.
      */
     public Identifier(BigInteger bigInteger) {
-        id = bigInteger.mod(base);
+        if (isCompact()) {
+            value = bigInteger.longValue() & mask;
+            id = null;
+        } else {
+            value = 0;
+            id = bigInteger.mod(base);
+        }
+    }
+
+    /**
+     * Creates a new {@link Identifier} by the given {@code long} value.
+     *
+     * @param value the value of the {@link Identifier}, eventually modulo
+     *              2^{@link Identifier#getBitLength()}.
+     */
+    public Identifier(long value) {
+        if (isCompact()) {
+            this.value = value & mask;
+            this.id = null;
+        } else {
+            this.value = 0;
+            this.id = BigInteger.valueOf(value).mod(base);
+        }
     }
 
     /**
      * Generates a new {@link Identifier} by hashing the given {@code byte}
-     * array using the SHA algorithm.
+     * array using the current {@link HashFunction}.
      *
      * @param bytes the byte array to be hashed.
      */
     public Identifier(byte[] bytes) {
-        id = new BigInteger(1, digest.digest(bytes)).shiftRight(8*digest.getDigestLength() - bits);
+        if (isCompact()) {
+            value = hashFunction.hash(bytes, 0, bytes.length) >>> (64 - bits);
+            id = null;
+        } else {
+            byte[] hash = HashFunction.sha1(bytes);
+            value = 0;
+            id = new BigInteger(1, hash).shiftRight(8*hash.length - bits);
+        }
     }
 
     /**
@@ -69,6 +209,9 @@ public class Identifier implements Comparable<Identifier> {
      * {@code bigInteger} mod 2^{@link Identifier#getBitLength()}.
      */
     public Identifier add(BigInteger bigInteger) {
+        if (id == null)
+            return new Identifier(value + bigInteger.longValue());
+
         return new Identifier(id.add(bigInteger));
     }
 
@@ -80,7 +223,10 @@ public class Identifier implements Comparable<Identifier> {
      * {@code identifier} mod 2^{@link Identifier#getBitLength()}.
      */
     public Identifier add(Identifier identifier) {
-        return add(identifier.id);
+        if (id == null && identifier.id == null)
+            return new Identifier(value + identifier.value);
+
+        return add(identifier.toBigInteger());
     }
 
     /**
@@ -91,6 +237,9 @@ public class Identifier implements Comparable<Identifier> {
      * {@code bigInteger} mod 2^{@link Identifier#getBitLength()}.
      */
     public Identifier subtract(BigInteger bigInteger) {
+        if (id == null)
+            return new Identifier(value - bigInteger.longValue());
+
         return new Identifier(id.subtract(bigInteger));
     }
 
@@ -102,7 +251,10 @@ public class Identifier implements Comparable<Identifier> {
      * {@code identifier} mod 2^{@link Identifier#getBitLength()}.
      */
     public Identifier subtract(Identifier identifier) {
-        return subtract(identifier.id);
+        if (id == null && identifier.id == null)
+            return new Identifier(value - identifier.value);
+
+        return subtract(identifier.toBigInteger());
     }
 
     /**
@@ -113,7 +265,27 @@ public class Identifier implements Comparable<Identifier> {
      * @return the {@link Identifier} converted to {@code int}.
      */
     public int getValue() {
-        return id.intValue();
+        return id == null? (int) value : id.intValue();
+    }
+
+    /**
+     * Converts the {@link Identifier} to {@code long}. If this
+     * {@link Identifier} is too big to fit in a long, only the low-order 64
+     * bits are returned.
+     *
+     * @return the {@link Identifier} converted to {@code long}.
+     */
+    public long longValue() {
+        return id == null? value : id.longValue();
+    }
+
+    /**
+     * Converts the {@link Identifier} to {@link BigInteger}.
+     *
+     * @return the {@link Identifier} converted to {@link BigInteger}.
+     */
+    public BigInteger toBigInteger() {
+        return id == null? BigInteger.valueOf(value) : id;
     }
 
     /**
@@ -128,10 +300,13 @@ public class Identifier implements Comparable<Identifier> {
      * otherwise.
      */
     public boolean isBetween(Identifier left, Identifier right) {
+        if (id == null && left.id == null && right.id == null)
+            return isBetween(value, left.value, right.value);
+
         Identifier idGap = this.subtract(left);
         Identifier rightGap = right.subtract(left);
 
-        return idGap.id.compareTo(BigInteger.ZERO) > 0 && idGap.compareTo(rightGap) <= 0;
+        return idGap.toBigInteger().signum() > 0 && idGap.compareTo(rightGap) <= 0;
     }
 
     /**
@@ -141,7 +316,7 @@ public class Identifier implements Comparable<Identifier> {
      */
     @Override
     public int hashCode() {
-        return id.hashCode();
+        return Long.hashCode(longValue());
     }
 
     /**
@@ -154,7 +329,7 @@ public class Identifier implements Comparable<Identifier> {
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof Identifier)
-            return id.equals(((Identifier) obj).id);
+            return compareTo((Identifier) obj) == 0;
 
         return false;
     }
@@ -169,7 +344,10 @@ public class Identifier implements Comparable<Identifier> {
      */
     @Override
     public int compareTo(Identifier identifier) {
-        return id.compareTo(identifier.id);
+        if (id == null && identifier.id == null)
+            return Long.compare(value, identifier.value);
+
+        return toBigInteger().compareTo(identifier.toBigInteger());
     }
 
     /**
@@ -179,6 +357,6 @@ public class Identifier implements Comparable<Identifier> {
      */
     @Override
     public String toString() {
-        return id.toString();
+        return id == null? Long.toString(value) : id.toString();
     }
 }
@@ -0,0 +1,179 @@
+package P2PBC.Chord;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * This {@link RoutingTable} implements Koorde, which embeds a de Bruijn
+ * graph of degree {@code k = 2^b} in the ring. Besides its successor, every
+ * node {@code m} keeps {@code k} de Bruijn pointers: the predecessor of
+ * {@code k*m} and the {@code k - 1} nodes following it. A lookup walks an
+ * imaginary de Bruijn node {@code i}, which is shifted by one digit of the
+ * key at every de Bruijn hop, and is simulated by the real node preceding
+ * it, reached through the successors. The first imaginary node is chosen
+ * between the node and its successor so that its low digits already match
+ * the high digits of the key, which skips most of the shifts. Lookups take
+ * {@code O(log_k(n))} hops with a constant number of entries per node.
+ */
+public class KoordeRoutingTable implements RoutingTable {
+    private final long[] ids;
+    private final int bits;
+    private final int digitBits;
+    private final int degree;
+    private final int[] pointers;
+    private final int[] offsets;
+    private final int[] entries;
+
+    /**
+     * Creates the Koorde routing tables of degree {@code k} of the given
+     * sorted identifiers.
+     *
+     * @param ids the sorted raw identifiers of the nodes.
+     * @param k the degree of the de Bruijn graph, a power of 2 whose
+     *          logarithm divides the bit length.
+     * @throws IllegalArgumentException if {@code k} is not a valid degree.
+     */
+    public KoordeRoutingTable(long[] ids, int k) {
+        bits = Identifier.getBitLength();
+
+        if (k < 2 || Integer.bitCount(k) != 1 || bits % Integer.numberOfTrailingZeros(k) != 0)
+            throw new IllegalArgumentException("The degree must be a power of 2, whose logarithm divides BITS.");
+
+        int n = ids.length;
+        this.ids = ids;
+        digitBits = Integer.numberOfTrailingZeros(k);
+        degree = k;
+        pointers = new int[n*k];
+        offsets = new int[n + 1];
+        int[] result = new int[n*(k + 1)];
+
+        for (int node = 0; node < n; node++) {
+            int first = predecessor(ids[node] << digitBits & mask()), count = offsets[node];
+            result[count++] = (node + 1) % n;
+
+            for (int j = 0; j < k; j++) {
+                int pointer = (first + j) % n;
+                pointers[node*k + j] = pointer;
+
+                if (!contains(result, offsets[node], count, pointer))
+                    result[count++] = pointer;
+            }
+
+            offsets[node + 1] = count;
+        }
+
+        entries = Arrays.copyOf(result, offsets[n]);
+    }
+
+    @Override
+    public int getEntryCount(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    @Override
+    public int getEntry(int node, int i) {
+        return entries[offsets[node] + i];
+    }
+
+    @Override
+    public boolean isGreedy() {
+        return false;
+    }
+
+    @Override
+    public int route(int source, long position, IntConsumer visitor) {
+        int n = ids.length, node = source, shifts = 0;
+        long mask = mask(), imaginary = ids[node], key = position;
+        visitor.accept(node);
+
+        // Places as many digits of the key as possible in the low digits of
+        // an imaginary node between the node and its successor
+        for (int digits = bits/digitBits; digits >= 0; digits--) {
+            int low = digits*digitBits;
+            long candidate = low == 0? ids[node] : (ids[node] >>> low << low | position >>> (bits - low)) & mask;
+
+            if (!Identifier.isBetween(candidate, ids[node], ids[(node + 1) % n]))
+                candidate = Identifier.add(candidate, low == bits? 0 : 1L << low);
+
+            if (Identifier.isBetween(candidate, ids[node], ids[(node + 1) % n])) {
+                imaginary = candidate;
+                shifts = bits/digitBits - digits;
+                key = low == bits? 0 : position << low & mask;
+                break;
+            }
+        }
+
+        while (true) {
+            long id = ids[node];
+            int successor = (node + 1) % n, next;
+
+            if (Identifier.isBetween(position, ids[(node + n - 1) % n], id))
+                return node;
+
+            if (Identifier.isBetween(position, id, ids[successor])) {
+                visitor.accept(successor);
+
+                return successor;
+            }
+
+            if (shifts > 0 && Identifier.isBetween(imaginary, id, ids[successor])) {
+                // The node simulates the imaginary one, which takes the next
+                // digit of the key and moves along its de Bruijn edge
+                imaginary = (imaginary << digitBits | key >>> (bits - digitBits)) & mask;
+                key = key << digitBits & mask;
+                shifts--;
+                next = closestPointer(node, imaginary);
+
+                if (next == node)
+                    continue;
+            } else {
+                next = successor;
+
+                // Stops when the network is circular
+                if (next == node)
+                    return node;
+            }
+
+            node = next;
+            visitor.accept(node);
+        }
+    }
+
+    // Returns the pointer of the node, or the node itself, that most closely
+    // precedes the position. A node at the position itself does not precede
+    // it, since it cannot simulate it
+    private int closestPointer(int node, long position) {
+        long target = Identifier.subtract(position, 1);
+        int best = node;
+
+        for (int j = node*degree; j < (node + 1)*degree; j++)
+            if (Identifier.subtract(target, ids[pointers[j]]) < Identifier.subtract(target, ids[best]))
+                best = pointers[j];
+
+        return best;
+    }
+
+    // Returns the index of the last node at or before the position
+    private int predecessor(long position) {
+        int index = Arrays.binarySearch(ids, position);
+
+        if (index < 0)
+            index = -index - 2;
+
+        return index < 0? ids.length - 1 : index;
+    }
+
+    // Returns the mask of the raw identifiers
+    private long mask() {
+        return (1L << bits) - 1;
+    }
+
+    // Checks whether the value is in array[from, to)
+    private static boolean contains(int[] array, int from, int to, int value) {
+        for (int i = from; i < to; i++)
+            if (array[i] == value)
+                return true;
+
+        return false;
+    }
+}
@@ -0,0 +1,45 @@
+package P2PBC.Chord;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * This {@link RouteCache} evicts the least frequently used route, breaking
+ * ties by evicting the least recently used one. The routes are kept in a
+ * {@link TreeSet} ordered by frequency and last use, so every operation takes
+ * logarithmic time.
+ */
+class LfuRouteCache extends RouteCache {
+    private final TreeSet<Route> order = new TreeSet<>(
+            Comparator.comparingLong((Route route) -> route.frequency).thenComparingLong(route -> route.tick));
+    private long clock = 0;
+
+    // Creates an empty cache with the given capacity
+    LfuRouteCache(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    void accessed(Route route) {
+        order.remove(route);
+        route.frequency++;
+        route.tick = clock++;
+        order.add(route);
+    }
+
+    @Override
+    void added(Route route) {
+        route.tick = clock++;
+        order.add(route);
+    }
+
+    @Override
+    void removed(Route route) {
+        order.remove(route);
+    }
+
+    @Override
+    Route victim(Route candidate) {
+        return order.first();
+    }
+}
@@ -0,0 +1,67 @@
+package P2PBC.Chord;
+
+/**
+ * This {@link RouteCache} evicts the least recently used route. The routes
+ * are kept in a doubly-linked list, from the most to the least recently
+ * used, so every operation takes constant time.
+ */
+class LruRouteCache extends RouteCache {
+    private Route head;
+    private Route tail;
+
+    // Creates an empty cache with the given capacity
+    LruRouteCache(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    void accessed(Route route) {
+        if (route != head) {
+            unlink(route);
+            linkFirst(route);
+        }
+    }
+
+    @Override
+    void added(Route route) {
+        linkFirst(route);
+    }
+
+    @Override
+    void removed(Route route) {
+        unlink(route);
+    }
+
+    @Override
+    Route victim(Route candidate) {
+        return tail;
+    }
+
+    // Inserts the route at the head of the list
+    private void linkFirst(Route route) {
+        route.previous = null;
+        route.next = head;
+
+        if (head != null)
+            head.previous = route;
+        else
+            tail = route;
+
+        head = route;
+    }
+
+    // Removes the route from the list
+    private void unlink(Route route) {
+        if (route.previous != null)
+            route.previous.next = route.next;
+        else
+            head = route.next;
+
+        if (route.next != null)
+            route.next.previous = route.previous;
+        else
+            tail = route.previous;
+
+        route.previous = route.next = null;
+    }
+}
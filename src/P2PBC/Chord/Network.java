@@ -0,0 +1,159 @@
+package P2PBC.Chord;
+
+import java.net.InetSocketAddress;
+import java.util.function.IntConsumer;
+
+/**
+ * This interface models a Chord network whose nodes are identified by their
+ * index in the ring, from {@code 0} to {@link Network#size()} {@code - 1}, in
+ * increasing order of {@link Identifier}. A physical peer may run several
+ * (virtual) nodes.
+ */
+public interface Network {
+    /**
+     * Returns the number of nodes in the network.
+     *
+     * @return the number of nodes.
+     */
+    int size();
+
+    /**
+     * Returns the distance between the given node and its predecessor, modulo
+     * 2^{@link Identifier#getBitLength()}. If the distance does not fit in a
+     * {@code long}, only the low-order 64 bits are returned.
+     *
+     * @param node the index of the node.
+     * @return the gap between the node and its predecessor.
+     */
+    long getGap(int node);
+
+    /**
+     * Returns the index of the physical peer running the given node. Peers
+     * are numbered from {@code 0} to {@link Network#getPeerCount()}
+     * {@code - 1}. Without virtual nodes every node is a different peer.
+     *
+     * @param node the index of the node.
+     * @return the index of its peer.
+     */
+    default int getPeer(int node) {
+        return node;
+    }
+
+    /**
+     * Returns the number of physical peers in the network.
+     *
+     * @return the number of peers.
+     */
+    default int getPeerCount() {
+        return size();
+    }
+
+    /**
+     * Returns the number of distinct entries in the routing table of the
+     * given node, i.e., the number of other nodes it has to keep track of.
+     *
+     * @param node the index of the node.
+     * @return the size of its routing table.
+     */
+    int getRoutingTableSize(int node);
+
+    /**
+     * Returns the {@link Identifier} of the given node.
+     *
+     * @param node the index of the node.
+     * @return the {@link Identifier} of the node.
+     */
+    Identifier getIdentifier(int node);
+
+    /**
+     * Returns the number of entries of the finger table of the given node,
+     * which is {@link Identifier#getBitLength()} in a Chord ring.
+     *
+     * @param node the index of the node.
+     * @return the number of fingers of the node.
+     */
+    default int getFingerCount(int node) {
+        return Identifier.getBitLength();
+    }
+
+    /**
+     * Returns the index of the {@code i}-th finger of the given node, i.e.,
+     * of the {@code i}-th entry of its finger table.
+     *
+     * @param node the index of the node.
+     * @param i the index of the finger, from 0 to
+     *          {@link Network#getFingerCount(int)} {@code - 1}.
+     * @return the index of the finger node.
+     */
+    int getFinger(int node, int i);
+
+    /**
+     * Returns the address of the given node.
+     *
+     * @param node the index of the node.
+     * @return the {@link InetSocketAddress} of the node.
+     */
+    InetSocketAddress getAddress(int node);
+
+    /**
+     * Computes the path from the {@code source} node to the successor of
+     * {@code key}, passing the index of every node in the path to
+     * {@code visitor}, in order, starting from {@code source}.
+     *
+     * @param source the index of the node starting the lookup.
+     * @param key the key to be searched, mapped to the ring through
+     *            {@link Identifier#ofKey(long)}.
+     * @param visitor the {@link IntConsumer} that receives the indices of the
+     *                nodes of the path.
+     * @return the index of the last node in the path, i.e., the (possible)
+     * owner of the key.
+     */
+    int route(int source, long key, IntConsumer visitor);
+
+    /**
+     * Routes a batch of lookups of the {@code source} node, following for
+     * every key the same path of {@link Network#route(int, long,
+     * IntConsumer)}. Instead of receiving every node of every path, the
+     * {@code visitor} receives every node together with the number of
+     * lookups passing through it, so paths shared by several keys can be
+     * visited once. By default the keys are routed one by one.
+     *
+     * @param source the index of the node starting the lookups.
+     * @param keys the keys to be searched, in {@code keys[0, count)}.
+     * @param count the number of keys.
+     * @param owners the array that receives the index of the last node in
+     *               the path of every key.
+     * @param pathLengths the array that receives the number of hops of the
+     *                    path of every key.
+     * @param visitor the {@link BatchVisitor} that receives the nodes of the
+     *                paths.
+     */
+    default void route(int source, long[] keys, int count, int[] owners, int[] pathLengths, BatchVisitor visitor) {
+        int[] hops = new int[1];
+        IntConsumer counter = node -> {
+            visitor.accept(node, 1);
+            hops[0]++;
+        };
+
+        for (int i = 0; i < count; i++) {
+            hops[0] = -1;
+            owners[i] = route(source, keys[i], counter);
+            pathLengths[i] = hops[0];
+        }
+    }
+
+    /**
+     * This interface receives the nodes visited by a batch of lookups.
+     */
+    @FunctionalInterface
+    interface BatchVisitor {
+        /**
+         * Visits a node of the paths of a batch of lookups. The same node
+         * may be visited several times, by different subsets of the lookups.
+         *
+         * @param node the index of the visited node.
+         * @param lookups the number of lookups visiting the node.
+         */
+        void accept(int node, int lookups);
+    }
+}
@@ -1,6 +1,5 @@
 package P2PBC.Chord;
 
-import java.io.*;
 import java.math.BigInteger;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -8,104 +7,156 @@ import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 /**
  * This class models a peer in the Chord network.
  */
 public class Node {
+    private static final Consumer<Node> IGNORE = node -> {};
+    private static int successorListSize = 4;
+    private static CachePolicy cachePolicy = null;
+    private static int cacheCapacity = 0;
     private Identifier id;
     private InetSocketAddress address;
     private Node[] fingerTable;
+    private Node[] successors;
     private Node predecessor;
+    private boolean alive = true;
+    private int nextFinger = 0;
+    private long messages = 0;
+    private final RouteCache cache;
+    int index = -1;
 
     /**
-     * Builds a ready-to-use Chord network with {@code nodes} nodes and
-     * finger tables of size {@code bits}.
+     * Sets the size of the successor list of every {@link Node} created
+     * afterwards.
      *
-     * @param bits the size (in bits) of the identifier or, equivalently,
-     *             the size of the finger tables.
-     * @param nodes the number of nodes in the network.
-     * @return A collection of {@link Node}s, with finger table set as a
-     * Chord ring.
+     * @param size the new size of the successor lists.
      */
-    public static Collection<Node> buildNetwork(int bits, int nodes) {
-        TreeMap<Identifier, Node> network = new TreeMap<>();
-        Random random = new Random();
-        byte[] bytes = new byte[4];
-        Identifier.setBitLength(bits);
-
-        while (network.size() < nodes) {
-            try {
-                random.nextBytes(bytes);
-                Node node = new Node(InetAddress.getByAddress(bytes), random.nextInt(65536));
-                network.putIfAbsent(node.getId(), node);
-            } catch (UnknownHostException ignore) {}
-        }
-
-        for (Node node : network.values())
-            node.initializeFingerTable(network);
-
-        return network.values();
+    public static void setSuccessorListSize(int size) {
+        successorListSize = size;
     }
 
     /**
-     * Writes the given collection {@code network} as a DOT file, using the
-     * {@code writer}.
+     * Returns the current size of the successor lists.
      *
-     * @param writer A character-stream writer.
-     * @param network The network to export.
-     * @throws IOException If an I/O error occurs.
+     * @return the size of the successor lists.
      */
-    public static void writeDOTFile(Writer writer, Collection<Node> network) throws IOException {
-        writeDOTFile(writer, network, true);
+    public static int getSuccessorListSize() {
+        return successorListSize;
     }
 
     /**
-     * Writes the given collection {@code network} as a DOT file, using the
-     * {@code writer}.
+     * Sets the route cache of every {@link Node} created afterwards. Every
+     * node caches the owners found by its own lookups, and consults its cache
+     * before its finger table.
      *
-     * @param writer A character-stream writer.
-     * @param network The network to export.
-     * @param asMultigraph If {@code true}, writes the network as it is, otherwise
-     *                     ignores duplicated edges.
-     * @throws IOException If an I/O error occurs.
+     * @param policy the {@link CachePolicy} of the caches, or {@code null} to
+     *               disable them.
+     * @param capacity the maximum number of routes in each cache.
      */
-    public static void writeDOTFile(Writer writer, Collection<Node> network, boolean asMultigraph) throws IOException {
-        writer.append("// BITS: ").append(String.valueOf(Identifier.getBitLength()))
-                .append("\n// NODES: ").append(String.valueOf(network.size()))
-                .append("\n\ndigraph network {\n");
-
-        for (Node node : network)
-            writer.append("\t").append(node.toDOTString(asMultigraph));
+    public static void setRouteCache(CachePolicy policy, int capacity) {
+        cachePolicy = policy;
+        cacheCapacity = capacity;
+    }
 
-        writer.append("}\n");
+    /**
+     * Builds a ready-to-use Chord network with {@code nodes} nodes and
+     * finger tables of size {@code bits}. If {@code bits} is at most
+     * {@link Identifier#MAX_COMPACT_BITS}, the network is built as a
+     * {@link Ring}, whose finger tables are computed in O({@code nodes *
+     * bits}) by sweeping the sorted identifiers, and then converted to
+     * {@link Node}s.
+     *
+     * @param bits the size (in bits) of the identifier or, equivalently,
+     *             the size of the finger tables.
+     * @param nodes the number of nodes in the network.
+     * @return A collection of {@link Node}s, with finger table set as a
+     * Chord ring.
+     */
+    public static Collection<Node> buildNetwork(int bits, int nodes) {
+        return buildNetwork(bits, nodes, 1);
     }
 
     /**
-     * Writes the given collection {@code network} as a SIF file, using the
-     * {@code writer}.
+     * Builds a ready-to-use Chord network with {@code nodes} physical peers,
+     * each one running {@code virtualNodes} virtual nodes, and finger tables
+     * of size {@code bits}. As in {@link Node#buildNetwork(int, int)}, the
+     * network is built as a {@link Ring} if {@code bits} is at most
+     * {@link Identifier#MAX_COMPACT_BITS}. The virtual nodes of a peer share
+     * its address, and are identified as in {@link Node#Node(InetSocketAddress,
+     * int)}.
      *
-     * @param writer A character-stream writer.
-     * @param network The network to export.
-     * @throws IOException If an I/O error occurs.
+     * @param bits the size (in bits) of the identifier or, equivalently,
+     *             the size of the finger tables.
+     * @param nodes the number of physical peers in the network.
+     * @param virtualNodes the number of virtual nodes of each peer.
+     * @return A collection of {@code nodes*virtualNodes} {@link Node}s, with
+     * finger table set as a Chord ring.
+     * @throws IllegalArgumentException if {@code virtualNodes} is not between
+     * 1 and {@link Ring#MAX_VIRTUAL_NODES}.
      */
-    public static void writeSIFFile(Writer writer, Collection<Node> network) throws IOException {
-        writeSIFFile(writer, network, true);
+    public static Collection<Node> buildNetwork(int bits, int nodes, int virtualNodes) {
+        return buildNetwork(bits, nodes, virtualNodes, new SplittableRandom().nextLong());
     }
 
     /**
-     * Writes the given collection {@code network} as a SIF file, using the
-     * {@code writer}.
+     * Builds a network as in {@link Node#buildNetwork(int, int, int)},
+     * drawing the addresses and ports of the peers from a
+     * {@link SplittableRandom} with the given seed, so that the same seed
+     * always gives the same network, as in
+     * {@link Ring#build(int, int, int, long)}.
      *
-     * @param writer A character-stream writer.
-     * @param network The network to export.
-     * @param asMultigraph If {@code true}, writes the network as it is, otherwise
-     *                     ignores duplicated edges.
-     * @throws IOException If an I/O error occurs.
+     * @param bits the size (in bits) of the identifier or, equivalently,
+     *             the size of the finger tables.
+     * @param nodes the number of physical peers in the network.
+     * @param virtualNodes the number of virtual nodes of each peer.
+     * @param seed the seed of the addresses and ports.
+     * @return A collection of {@code nodes*virtualNodes} {@link Node}s, with
+     * finger table set as a Chord ring.
+     * @throws IllegalArgumentException if {@code virtualNodes} is not between
+     * 1 and {@link Ring#MAX_VIRTUAL_NODES}.
      */
-    public static void writeSIFFile(Writer writer, Collection<Node> network, boolean asMultigraph) throws IOException{
-        for (Node node : network)
-            writer.append(node.toSIFString(asMultigraph));
+    public static Collection<Node> buildNetwork(int bits, int nodes, int virtualNodes, long seed) {
+        if (bits <= Identifier.MAX_COMPACT_BITS)
+            return Ring.build(bits, nodes, virtualNodes, seed).toNodes();
+
+        if (virtualNodes < 1 || virtualNodes > Ring.MAX_VIRTUAL_NODES)
+            throw new IllegalArgumentException("Virtual nodes must be between 1 and " + Ring.MAX_VIRTUAL_NODES + ".");
+
+        TreeMap<Identifier, Node> network = new TreeMap<>();
+        SplittableRandom random = new SplittableRandom(seed);
+        byte[] bytes = new byte[4];
+        Node[] peer = new Node[virtualNodes];
+        Identifier.setBitLength(bits);
+
+        // A peer is added only if none of its virtual nodes collides
+        for (int peers = 0; peers < nodes; ) {
+            try {
+                ByteBuffer.wrap(bytes).putInt(random.nextInt());
+                InetSocketAddress address = new InetSocketAddress(InetAddress.getByAddress(bytes),
+                        random.nextInt(65536));
+
+                for (int v = 0; v < virtualNodes; v++)
+                    peer[v] = new Node(address, v);
+
+                if (Arrays.stream(peer).map(Node::getId).distinct().count() < virtualNodes
+                        || Arrays.stream(peer).anyMatch(node -> network.containsKey(node.getId())))
+                    continue;
+
+                for (Node node : peer)
+                    network.put(node.getId(), node);
+
+                peers++;
+            } catch (UnknownHostException ignore) {}
+        }
+
+        for (Node node : network.values())
+            node.initializeFingerTable(network);
+
+        return network.values();
     }
 
     /**
@@ -126,12 +177,38 @@ public class Node {
      * @param address the address of the peer.
      */
     public Node(InetSocketAddress address) {
+        this(address, 0);
+    }
+
+    /**
+     * Creates the {@code virtualNode}-th virtual {@link Node} of the peer
+     * with the given {@link InetSocketAddress}. Its identifier is the hash
+     * of the address followed by the port, as a 32-bit integer having
+     * {@code virtualNode} in its upper 16 bits, so the virtual node 0 has the
+     * same identifier of the peer.
+     *
+     * @param address the address of the peer.
+     * @param virtualNode the index of the virtual node, from 0 to
+     *                    {@link Ring#MAX_VIRTUAL_NODES} {@code - 1}.
+     */
+    public Node(InetSocketAddress address, int virtualNode) {
         this.address = address;
         ByteBuffer buffer = ByteBuffer.allocate(8)
                 .put(address.getAddress().getAddress())
-                .putInt(address.getPort());
+                .putInt(virtualNode << 16 | address.getPort());
         this.id = new Identifier(buffer.array());
         this.fingerTable = new Node[Identifier.getBitLength()];
+        this.successors = new Node[successorListSize];
+        this.cache = cachePolicy == null? null : cachePolicy.create(cacheCapacity);
+    }
+
+    // Creates a node with an already computed identifier
+    Node(InetSocketAddress address, Identifier id) {
+        this.address = address;
+        this.id = id;
+        this.fingerTable = new Node[Identifier.getBitLength()];
+        this.successors = new Node[successorListSize];
+        this.cache = cachePolicy == null? null : cachePolicy.create(cacheCapacity);
     }
 
     /**
@@ -152,15 +229,31 @@ public class Node {
         return id;
     }
 
+    /**
+     * Returns the route cache of the node.
+     *
+     * @return the {@link RouteCache} of the node, or {@code null} if routes
+     * are not cached.
+     */
+    public RouteCache getRouteCache() {
+        return cache;
+    }
+
     /**
      * Returns the current predecessor of the node in the Chord ring.
      *
-     * @return the predecessor {@link Node} in the network.
+     * @return the predecessor {@link Node} in the network, or {@code null} if
+     * it is unknown.
      */
     public Node getPredecessor() {
         return predecessor;
     }
 
+    // Sets the predecessor of the node
+    void setPredecessor(Node predecessor) {
+        this.predecessor = predecessor;
+    }
+
     /**
      * Returns the current finger table of the node.
      *
@@ -171,70 +264,182 @@ public class Node {
         return fingerTable;
     }
 
-    // Initializes the finger table by the given network
-    private void initializeFingerTable(TreeMap<Identifier, Node> network) {
-        BigInteger gap = BigInteger.ONE;
-        Entry<Identifier, Node> entry = network.lowerEntry(id);
-        predecessor = entry == null? network.lastEntry().getValue() : entry.getValue();
+    /**
+     * Returns the current successor list of the node, used as backup when
+     * the successor leaves the network. Some entries may be {@code null}.
+     *
+     * @return an array of {@link Node}s, representing the successor list of
+     * the node.
+     */
+    public Node[] getSuccessorList() {
+        return successors;
+    }
 
-        for (int i = 0; i < Identifier.getBitLength(); i++) {
-            entry = network.ceilingEntry(id.add(gap));
-            fingerTable[i] = entry == null? network.firstEntry().getValue() : entry.getValue();
-            gap = gap.shiftLeft(1);
-        }
+    /**
+     * Returns the first alive successor of the node, looking at its first
+     * finger and then at its successor list.
+     *
+     * @return the successor {@link Node}, or {@code null} if every known
+     * successor has left the network.
+     */
+    public Node getSuccessor() {
+        if (fingerTable[0] != null && fingerTable[0].alive)
+            return fingerTable[0];
+
+        for (Node successor : successors)
+            if (successor != null && successor.alive)
+                return successor;
+
+        return null;
     }
 
     /**
-     * Returns the {@link Identifier} of the node as a {@link String}.
+     * Checks whether the node is still part of the network.
      *
-     * @return a string representation of the node.
+     * @return {@code false} if the node has left the network, {@code true}
+     * otherwise.
      */
-    @Override
-    public String toString() {
-        return id.toString();
+    public boolean isAlive() {
+        return alive;
     }
 
-    private String toSIFString() {
-        return toSIFString(true);
+    /**
+     * Returns the number of maintenance messages sent by the node so far,
+     * i.e., the remote calls done while joining the network or running the
+     * periodic stabilization.
+     *
+     * @return the number of messages sent.
+     */
+    public long getMessageCount() {
+        return messages;
     }
 
-    // Builds the SIF representation of the node
-    private String toSIFString(boolean asMultigraph) {
-        StringBuilder result = new StringBuilder();
-        Collection<Node> neighbours = Arrays.asList(fingerTable);
+    /**
+     * Joins the network that contains {@code bootstrap}, asking it the
+     * successor of this node. The predecessor and the rest of the finger
+     * table are set by the following stabilizations. The lookup does not use
+     * the {@link RouteCache} of {@code bootstrap}.
+     *
+     * @param bootstrap any alive {@link Node} in the network.
+     */
+    public void join(Node bootstrap) {
+        predecessor = null;
+        Node successor = bootstrap.route(id, node -> messages++, null);
+        Arrays.fill(fingerTable, successor);
+        Arrays.fill(successors, null);
+        successors[0] = successor;
+        alive = true;
+    }
 
-        if (!asMultigraph)
-            neighbours = new HashSet<>(neighbours);
+    /**
+     * Leaves the network abruptly, without notifying any other {@link Node}.
+     */
+    public void fail() {
+        alive = false;
+    }
 
-        result.append(id.toString()).append(" link");
+    /**
+     * Runs the Chord stabilization protocol: asks the successor for its
+     * predecessor, adopts it as new successor if it lies between the two
+     * nodes, notifies the successor and copies its successor list. Every
+     * dead successor contacted costs a (timed out) message.
+     */
+    public void stabilize() {
+        Node successor = null;
 
-        for (Node link: neighbours) {
-            result.append(" ").append(link.toString());
+        for (int i = -1; i < successors.length && successor == null; i++) {
+            Node candidate = i < 0? fingerTable[0] : successors[i];
+
+            if (candidate != null) {
+                messages++;
+
+                if (candidate.alive)
+                    successor = candidate;
+            }
         }
 
-        return result.append("\n").toString();
+        if (successor == null)
+            return;
+
+        Node candidate = successor.predecessor;
+
+        if (candidate != null && candidate.alive && candidate != successor
+                && candidate.id.isBetween(id, successor.id)) {
+            successor = candidate;
+            messages++;
+        }
+
+        fingerTable[0] = successor;
+        successor.notify(this);
+        messages++;
+        successors[0] = successor;
+
+        for (int i = 1; i < successors.length; i++)
+            successors[i] = successor.successors[i - 1] == this? null : successor.successors[i - 1];
     }
 
-    private String toDOTString() {
-        return toDOTString(true);
+    // Handles the notification of a node that believes to be the predecessor
+    private void notify(Node node) {
+        if (predecessor == null || !predecessor.alive || (node != this && node.id.isBetween(predecessor.id, id)))
+            predecessor = node;
     }
 
-    // Builds the DOT representation of the node
-    private String toDOTString(boolean asMultigraph) {
-        StringBuilder result = new StringBuilder();
-        Collection<Node> neighbours = Arrays.asList(fingerTable);
+    /**
+     * Refreshes the next entry of the finger table, looking up the successor
+     * of {@code id + 2^i}. Every call refreshes a different entry, cycling
+     * over the whole table. The lookup does not use the {@link RouteCache}.
+     */
+    public void fixFingers() {
+        nextFinger = (nextFinger + 1) % fingerTable.length;
+        Identifier target = id.add(BigInteger.ONE.shiftLeft(nextFinger));
+        Node finger = route(target, node -> { if (node != this) messages++; }, null);
 
-        if (!asMultigraph)
-            neighbours = new HashSet<>(neighbours);
+        if (finger != null && finger.alive)
+            fingerTable[nextFinger] = finger;
+    }
 
-        result.append(id.toString()).append(" [label=\"").append(address.toString()).append("\"]; ")
-                .append(id.toString()).append(" -> {");
+    /**
+     * Checks whether the predecessor has left the network and, if so, clears
+     * it.
+     */
+    public void checkPredecessor() {
+        if (predecessor == null)
+            return;
+
+        messages++;
 
-        for (Node link: neighbours) {
-            result.append(" ").append(link.toString());
+        if (!predecessor.alive)
+            predecessor = null;
+    }
+
+    // Initializes the finger table by the given network
+    private void initializeFingerTable(TreeMap<Identifier, Node> network) {
+        BigInteger gap = BigInteger.ONE;
+        Entry<Identifier, Node> entry = network.lowerEntry(id);
+        predecessor = entry == null? network.lastEntry().getValue() : entry.getValue();
+
+        for (int i = 0; i < Identifier.getBitLength(); i++) {
+            entry = network.ceilingEntry(id.add(gap));
+            fingerTable[i] = entry == null? network.firstEntry().getValue() : entry.getValue();
+            gap = gap.shiftLeft(1);
         }
 
-        return result.append(" }\n").toString();
+        entry = network.higherEntry(id);
+
+        for (int i = 0; i < successors.length; i++) {
+            successors[i] = entry == null? network.firstEntry().getValue() : entry.getValue();
+            entry = network.higherEntry(successors[i].id);
+        }
+    }
+
+    /**
+     * Returns the {@link Identifier} of the node as a {@link String}.
+     *
+     * @return a string representation of the node.
+     */
+    @Override
+    public String toString() {
+        return id.toString();
     }
 
     /**
@@ -251,34 +456,272 @@ public class Node {
      */
     public List<Node> getPathTo(Identifier identifier) {
         ArrayList<Node> result = new ArrayList<>();
-        result.add(this);
+        getPathTo(identifier, result::add);
+
+        return result;
+    }
 
-        if (identifier.isBetween(predecessor.id, id))
-            return result;
+    /**
+     * Computes the path to the successor of the {@link Identifier}
+     * {@code identifier}, passing every {@link Node} in the path to
+     * {@code visitor}, in order, starting from {@code this}. The path is
+     * computed iteratively and no object is allocated, except for new routes
+     * in the cache.
+     *
+     * If the node has a {@link RouteCache}, it is consulted before the finger
+     * table, so a lookup served from the cache takes a single hop (or more,
+     * if the cached owner is stale and the lookup continues from it). The
+     * owner found is then cached.
+     *
+     * @param identifier the {@link Identifier} of the key to be searched in
+     *                   the Chord network.
+     * @param visitor the {@link Consumer} that receives the {@link Node}s of
+     *                the path, including {@code this} and the last one.
+     * @return the last {@link Node} in the path, i.e., the (possible) owner of
+     * the key.
+     */
+    public Node getPathTo(Identifier identifier, Consumer<? super Node> visitor) {
+        Node end = route(identifier, visitor, cache);
 
-        if (identifier.isBetween(id, fingerTable[0].id)) {
-            result.add(fingerTable[0]);
+        if (cache != null && end != this && end.predecessor != null)
+            cache.put(end.predecessor.id, end);
 
-            return result;
+        return end;
+    }
+
+    /**
+     * Computes the paths to the successors of a batch of {@link Identifier}s,
+     * which are the same of {@link Node#getPathTo(Identifier, Consumer)}.
+     * The identifiers are sorted by clockwise distance from {@code this} and
+     * routed together: every node of a path receives a contiguous range of
+     * identifiers, and splits it with binary searches into the identifiers
+     * it owns, the ones owned by its successor and the ones forwarded to each
+     * node it knows. The closest preceding node is therefore computed once per
+     * range instead of once per identifier, and the nodes shared by the paths
+     * of a range are visited once.
+     *
+     * If the node has a {@link RouteCache}, every lookup may change the path
+     * of the following ones, so the identifiers are routed one by one, in
+     * order.
+     *
+     * @param identifiers the {@link Identifier}s of the keys to be searched
+     *                    in the Chord network.
+     * @param owners the array that receives the last {@link Node} in the
+     *               path of every identifier.
+     * @param pathLengths the array that receives the number of hops of the
+     *                    path of every identifier.
+     * @param visitor the {@link ObjIntConsumer} that receives the
+     *                {@link Node}s of the paths, together with the number of
+     *                identifiers whose path visits them.
+     */
+    public void getPathsTo(Identifier[] identifiers, Node[] owners, int[] pathLengths,
+                           ObjIntConsumer<? super Node> visitor) {
+        if (cache != null) {
+            int[] hops = new int[1];
+            Consumer<Node> counter = node -> {
+                visitor.accept(node, 1);
+                hops[0]++;
+            };
+
+            for (int i = 0; i < identifiers.length; i++) {
+                hops[0] = -1;
+                owners[i] = getPathTo(identifiers[i], counter);
+                pathLengths[i] = hops[0];
+            }
+
+            return;
         }
 
-        Node predecessor = closestPrecedingNode(identifier);
+        if (identifiers.length == 0)
+            return;
+
+        int count = identifiers.length, indexBits = 32 - Integer.numberOfLeadingZeros(Math.max(count - 1, 0));
+        int shift = Math.max(Identifier.getBitLength() + indexBits - 63, 0);
+        Identifier[] distances = new Identifier[count];
+        long[] packed = new long[count];
+
+        // Sorts the distances together with the indices of the identifiers,
+        // packed in a single long, dropping the low bits of the distances
+        // that do not fit
+        for (int i = 0; i < count; i++) {
+            distances[i] = identifiers[i].subtract(id);
+            long high = Identifier.isCompact()? distances[i].longValue() >>> shift
+                    : distances[i].toBigInteger().shiftRight(shift).longValue();
+            packed[i] = high << indexBits | i;
+        }
 
-        // Prevents stack overflow when the network is circular
-        if (predecessor == this)
-            return result;
+        Arrays.sort(packed);
+        int[] order = new int[count];
+        Identifier[] sorted = new Identifier[count];
 
-        result.addAll(predecessor.getPathTo(identifier));
+        for (int k = 0; k < count; k++) {
+            int i = (int) (packed[k] & ((1L << indexBits) - 1)), j = k;
 
-        return result;
+            // Restores the order of the identifiers whose distances only
+            // differ in the dropped bits, which are close to each other
+            for (; j > 0 && distances[order[j - 1]].compareTo(distances[i]) > 0; j--)
+                order[j] = order[j - 1];
+
+            order[j] = i;
+        }
+
+        for (int k = 0; k < count; k++)
+            sorted[k] = distances[order[k]];
+
+        route(id, sorted, order, 0, count, 0, owners, pathLengths, visitor);
+    }
+
+    // Routes the identifiers at the sorted distances[from, to) from the
+    // origin, whose indices are order[from, to). They are also sorted by
+    // distance from the node, which is reached after the given number of
+    // hops. An identifier at distance 0 from the node is owned by it, the
+    // ones owned by its successor follow, then the ones to be forwarded and
+    // finally the other ones owned by the node
+    private void route(Identifier origin, Identifier[] distances, int[] order, int from, int to, int hops,
+                       Node[] owners, int[] pathLengths, ObjIntConsumer<? super Node> visitor) {
+        // A single identifier is routed hop by hop, without searching
+        if (to - from == 1) {
+            int[] visits = {0};
+            Node owner = route(distances[from].add(origin), node -> {
+                visitor.accept(node, 1);
+                visits[0]++;
+            }, null);
+            end(from, to, owner, hops + visits[0] - 1, order, owners, pathLengths);
+
+            return;
+        }
+
+        visitor.accept(this, to - from);
+        Node successor = getSuccessor();
+        Identifier offset = id.subtract(origin);
+
+        // Stops when every known successor has left the network
+        if (successor == null) {
+            end(from, to, this, hops, order, owners, pathLengths);
+
+            return;
+        }
+
+        int first = search(distances, from, to, offset, new Identifier(0));
+        int last = predecessor == null || predecessor.id.equals(id)? to
+                : search(distances, first, to, offset, predecessor.id.subtract(id));
+        int forwarded = successor.id.equals(id)? first
+                : search(distances, first, last, offset, successor.id.subtract(id));
+
+        end(from, first, this, hops, order, owners, pathLengths);
+        end(last, to, this, hops, order, owners, pathLengths);
+
+        if (forwarded > first) {
+            visitor.accept(successor, forwarded - first);
+            end(first, forwarded, successor, hops + 1, order, owners, pathLengths);
+        }
+
+        // The closest preceding node of the farthest identifier is also the
+        // closest preceding node of every closer identifier it precedes
+        for (int high = last, low; high > forwarded; high = low) {
+            Node next = closestPrecedingNode(distances[high - 1].add(origin));
+
+            // Stops when the network is circular
+            if (next == this) {
+                end(forwarded, high, this, hops, order, owners, pathLengths);
+
+                return;
+            }
+
+            low = search(distances, forwarded, high, offset, next.id.subtract(id).subtract(BigInteger.ONE));
+            next.route(origin, distances, order, low, high, hops + 1, owners, pathLengths, visitor);
+        }
+    }
+
+    // Returns the first index in [from, to) whose distance, minus the offset,
+    // is greater than the given one, given that distances are sorted
+    private static int search(Identifier[] distances, int from, int to, Identifier offset, Identifier distance) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+
+            if (distances[middle].subtract(offset).compareTo(distance) > 0)
+                to = middle;
+            else
+                from = middle + 1;
+        }
+
+        return from;
+    }
+
+    // Sets the last node and the path length of the identifiers with indices
+    // order[from, to)
+    private static void end(int from, int to, Node node, int hops, int[] order, Node[] owners, int[] pathLengths) {
+        for (int k = from; k < to; k++) {
+            owners[order[k]] = node;
+            pathLengths[order[k]] = hops;
+        }
+    }
+
+    // Computes the path to the successor of the identifier, consulting the
+    // given cache, if any, in the first step. Maintenance lookups pass no
+    // cache, so that the cache only serves and counts the workload
+    private Node route(Identifier identifier, Consumer<? super Node> visitor, RouteCache cache) {
+        Node node = this;
+
+        while (true) {
+            visitor.accept(node);
+
+            if (node.predecessor != null && identifier.isBetween(node.predecessor.id, node.id))
+                return node;
+
+            Node successor = node.getSuccessor();
+
+            // Stops when every known successor has left the network
+            if (successor == null)
+                return node;
+
+            if (identifier.isBetween(node.id, successor.id)) {
+                visitor.accept(successor);
+
+                return successor;
+            }
+
+            Node next = cache != null? cache.get(identifier) : null;
+
+            // Consults the cache only once, so that a stale route leading
+            // back to this node cannot be followed again
+            cache = null;
+
+            if (next == null || next == node)
+                next = node.closestPrecedingNode(identifier);
+
+            // Stops when the network is circular
+            if (next == node)
+                return node;
+
+            node = next;
+        }
     }
 
-    // Computes the closest preceding node of the identifier
+    /**
+     * Computes the (possible) owner of the {@link Identifier}
+     * {@code identifier}, following the same path of
+     * {@link Node#getPathTo(Identifier)} but without storing it.
+     *
+     * @param identifier the {@link Identifier} of the key to be searched in
+     *                   the Chord network.
+     * @return the last {@link Node} in the path to {@code identifier}.
+     */
+    public Node findSuccessor(Identifier identifier) {
+        return getPathTo(identifier, IGNORE);
+    }
+
+    // Computes the closest alive preceding node of the identifier, looking at
+    // the finger table and then at the successor list
     private Node closestPrecedingNode(Identifier identifier) {
-        for (int i = Identifier.getBitLength() - 1; i >= 0 ; i--)
-            if (fingerTable[i].id.isBetween(id, identifier))
+        for (int i = fingerTable.length - 1; i >= 0 ; i--)
+            if (fingerTable[i].alive && fingerTable[i].id.isBetween(id, identifier))
                 return fingerTable[i];
 
+        for (int i = successors.length - 1; i >= 0 ; i--)
+            if (successors[i] != null && successors[i].alive && successors[i].id.isBetween(id, identifier))
+                return successors[i];
+
         return this;
     }
 
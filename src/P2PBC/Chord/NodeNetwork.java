@@ -0,0 +1,117 @@
+package P2PBC.Chord;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * This class exposes a collection of {@link Node}s as a {@link Network}, so
+ * that it can be simulated through the same interface of a {@link Ring}.
+ * Nodes with the same address are virtual nodes of the same peer.
+ */
+public class NodeNetwork implements Network {
+    private final Node[] nodes;
+    private final int[] peers;
+    private final int peerCount;
+
+    /**
+     * Creates a new {@link NodeNetwork} from the given {@link Node}s, which
+     * are indexed by increasing {@link Identifier}.
+     *
+     * @param network the {@link Node}s of the network.
+     */
+    public NodeNetwork(Collection<Node> network) {
+        nodes = network.toArray(new Node[0]);
+        Arrays.sort(nodes, Comparator.comparing(Node::getId));
+
+        HashMap<InetSocketAddress, Integer> addresses = new HashMap<>();
+        peers = new int[nodes.length];
+
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i].index = i;
+            peers[i] = addresses.computeIfAbsent(nodes[i].getAddress(), address -> addresses.size());
+        }
+
+        peerCount = addresses.size();
+    }
+
+    /**
+     * Returns the {@link Node} with the given index.
+     *
+     * @param index the index of the node.
+     * @return the {@link Node} with the given index.
+     */
+    public Node get(int index) {
+        return nodes[index];
+    }
+
+    @Override
+    public int size() {
+        return nodes.length;
+    }
+
+    @Override
+    public long getGap(int node) {
+        return nodes[node].getId().subtract(nodes[node].getPredecessor().getId()).longValue();
+    }
+
+    @Override
+    public int getPeer(int node) {
+        return peers[node];
+    }
+
+    @Override
+    public int getPeerCount() {
+        return peerCount;
+    }
+
+    @Override
+    public int getRoutingTableSize(int node) {
+        Node[] fingerTable = nodes[node].getFingerTable();
+        int size = 0;
+
+        for (int i = 0; i < fingerTable.length; i++)
+            if (i == 0 || fingerTable[i] != fingerTable[i - 1])
+                size++;
+
+        return size;
+    }
+
+    @Override
+    public Identifier getIdentifier(int node) {
+        return nodes[node].getId();
+    }
+
+    @Override
+    public int getFinger(int node, int i) {
+        return nodes[node].getFingerTable()[i].index;
+    }
+
+    @Override
+    public InetSocketAddress getAddress(int node) {
+        return nodes[node].getAddress();
+    }
+
+    @Override
+    public int route(int source, long key, IntConsumer visitor) {
+        return nodes[source].getPathTo(Identifier.ofKey(key), node -> visitor.accept(node.index)).index;
+    }
+
+    @Override
+    public void route(int source, long[] keys, int count, int[] owners, int[] pathLengths, BatchVisitor visitor) {
+        Identifier[] identifiers = new Identifier[count];
+        Node[] ends = new Node[count];
+
+        for (int i = 0; i < count; i++)
+            identifiers[i] = Identifier.ofKey(keys[i]);
+
+        nodes[source].getPathsTo(identifiers, ends, pathLengths,
+                (node, lookups) -> visitor.accept(node.index, lookups));
+
+        for (int i = 0; i < count; i++)
+            owners[i] = ends[i].index;
+    }
+}
@@ -0,0 +1,163 @@
+package P2PBC.Chord;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class is the key-value store of a single node, mapping {@code long}
+ * keys to values of a fixed size. Keys live in an open-addressing table of
+ * primitive arrays, while values are stored off-heap, in a direct buffer
+ * whose slots are parallel to the ones of the keys, so that millions of
+ * values cost no object headers and put no pressure on the garbage
+ * collector. The table is allocated at the first put and doubles when it is
+ * three-quarters full. Every method is synchronized, since the same store is
+ * written by every node that routes a key to it.
+ */
+public class NodeStore {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final int valueSize;
+    private long[] keys = new long[0];
+    private boolean[] used = new boolean[0];
+    private ByteBuffer values = null;
+    private int size = 0;
+
+    /**
+     * Creates a new, empty {@link NodeStore}.
+     *
+     * @param valueSize the size of every value, in bytes.
+     */
+    public NodeStore(int valueSize) {
+        this.valueSize = valueSize;
+    }
+
+    /**
+     * Stores the value of the given key, replacing the previous one, if any.
+     *
+     * @param key the key.
+     * @param value the buffer holding the value between its position and its
+     *              limit, which must be exactly {@code valueSize} bytes. The
+     *              position of the buffer is not changed.
+     * @throws IllegalArgumentException if the value has the wrong size, or
+     * the store would need more than 2^31 - 1 bytes for its values.
+     */
+    public synchronized void put(long key, ByteBuffer value) {
+        if (value.remaining() != valueSize)
+            throw new IllegalArgumentException("Values must be " + valueSize + " bytes long.");
+
+        // Grows only when a key is added, so that the capacity depends on the
+        // stored keys and not on the order of the puts
+        if (4*(size + 1) > 3*keys.length && (keys.length == 0 || !used[find(key)]))
+            resize(Math.max(INITIAL_CAPACITY, 2*keys.length));
+
+        int slot = find(key);
+
+        if (!used[slot]) {
+            used[slot] = true;
+            keys[slot] = key;
+            size++;
+        }
+
+        values.position(offset(slot));
+        values.put(value.duplicate());
+    }
+
+    /**
+     * Copies the value of the given key into {@code target}, if the key is
+     * stored.
+     *
+     * @param key the key.
+     * @param target the buffer where the value is copied, from its position,
+     *               which is advanced by {@code valueSize} bytes.
+     * @return {@code true} if the key is stored, {@code false} otherwise.
+     */
+    public synchronized boolean get(long key, ByteBuffer target) {
+        if (size == 0)
+            return false;
+
+        int slot = find(key);
+
+        if (!used[slot])
+            return false;
+
+        ByteBuffer value = values.duplicate();
+        value.position(offset(slot)).limit(offset(slot + 1));
+        target.put(value);
+
+        return true;
+    }
+
+    /**
+     * Returns the number of keys in the store.
+     *
+     * @return the number of keys.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes of the stored entries, i.e., 8 bytes per
+     * key and {@code valueSize} bytes per value.
+     *
+     * @return the stored bytes.
+     */
+    public synchronized long getStoredBytes() {
+        return (long) size*(8 + valueSize);
+    }
+
+    /**
+     * Returns the number of bytes allocated by the store, including the
+     * empty slots of the table.
+     *
+     * @return the allocated bytes.
+     */
+    public synchronized long getAllocatedBytes() {
+        return (long) keys.length*(9 + valueSize);
+    }
+
+    // Returns the slot of the key, or the empty slot where it would be
+    // inserted, with linear probing
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) ((key*0x9E3779B97F4A7C15L) >>> 32) & mask;
+
+        while (used[slot] && keys[slot] != key)
+            slot = (slot + 1) & mask;
+
+        return slot;
+    }
+
+    // Moves every entry to a table with the given capacity, a power of 2,
+    // unless its values would not fit in a single buffer
+    private void resize(int capacity) {
+        if ((long) capacity*valueSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The values of a store must fit in 2^31 - 1 bytes, i.e., at most "
+                    + Integer.MAX_VALUE/valueSize + " slots of " + valueSize + " bytes.");
+
+        // The buffer is allocated first, so that the store is left intact if
+        // there is no direct memory for it
+        ByteBuffer newValues = ByteBuffer.allocateDirect(offset(capacity));
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        ByteBuffer oldValues = values;
+        keys = new long[capacity];
+        used = new boolean[capacity];
+        values = newValues;
+
+        for (int i = 0; i < oldKeys.length; i++)
+            if (oldUsed[i]) {
+                int slot = find(oldKeys[i]);
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                oldValues.limit(offset(i + 1)).position(offset(i));
+                values.position(offset(slot));
+                values.put(oldValues);
+            }
+    }
+
+    // Returns the offset of the value in the given slot. The capacity is
+    // checked in resize, so the offsets of the table fit in an int
+    private int offset(int slot) {
+        return (int) ((long) slot*valueSize);
+    }
+}
@@ -0,0 +1,111 @@
+package P2PBC.Chord;
+
+import java.net.InetSocketAddress;
+import java.util.function.IntConsumer;
+
+/**
+ * This class routes the nodes of a {@link Network} with a different
+ * {@link RoutingTable}, keeping their identifiers, peers and addresses, so
+ * that the same ring can be simulated with different overlay geometries.
+ * The fingers of the network are the entries of the routing tables. Valid
+ * only if {@link Identifier#isCompact()} holds.
+ */
+public class OverlayNetwork implements Network {
+    private final Network network;
+    private final RoutingTable table;
+
+    /**
+     * Creates a new {@link OverlayNetwork} of the given nodes and routing
+     * tables.
+     *
+     * @param network the {@link Network} whose nodes are used.
+     * @param table the {@link RoutingTable} of the nodes.
+     */
+    public OverlayNetwork(Network network, RoutingTable table) {
+        this.network = network;
+        this.table = table;
+    }
+
+    /**
+     * Parses the overlay geometry of the given network, as in
+     * {@link RoutingTable#parse(String, long[], long)}.
+     *
+     * @param spec the specification of the routing tables.
+     * @param network the {@link Network} whose nodes are used.
+     * @param seed the seed used by randomized routing tables.
+     * @return the corresponding {@link OverlayNetwork}.
+     * @throws IllegalArgumentException if {@code spec} is not a valid
+     * specification or the identifiers are not compact.
+     */
+    public static OverlayNetwork parse(String spec, Network network, long seed) {
+        if (!Identifier.isCompact())
+            throw new IllegalArgumentException("Overlay geometries require BITS <= "
+                    + Identifier.MAX_COMPACT_BITS + ".");
+
+        long[] ids = new long[network.size()];
+
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = network.getIdentifier(i).longValue();
+
+        return new OverlayNetwork(network, RoutingTable.parse(spec, ids, seed));
+    }
+
+    /**
+     * Returns the routing tables of the nodes.
+     *
+     * @return the {@link RoutingTable} of the nodes.
+     */
+    public RoutingTable getRoutingTable() {
+        return table;
+    }
+
+    @Override
+    public int size() {
+        return network.size();
+    }
+
+    @Override
+    public long getGap(int node) {
+        return network.getGap(node);
+    }
+
+    @Override
+    public int getPeer(int node) {
+        return network.getPeer(node);
+    }
+
+    @Override
+    public int getPeerCount() {
+        return network.getPeerCount();
+    }
+
+    @Override
+    public int getRoutingTableSize(int node) {
+        return table.getEntryCount(node);
+    }
+
+    @Override
+    public Identifier getIdentifier(int node) {
+        return network.getIdentifier(node);
+    }
+
+    @Override
+    public int getFingerCount(int node) {
+        return table.getEntryCount(node);
+    }
+
+    @Override
+    public int getFinger(int node, int i) {
+        return table.getEntry(node, i);
+    }
+
+    @Override
+    public InetSocketAddress getAddress(int node) {
+        return network.getAddress(node);
+    }
+
+    @Override
+    public int route(int source, long key, IntConsumer visitor) {
+        return table.route(source, Identifier.position(key), visitor);
+    }
+}
@@ -0,0 +1,901 @@
+package P2PBC.Chord;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class models a whole Chord ring in a compact, struct-of-arrays form.
+ * The nodes are identified by their index, the identifiers are stored as a
+ * sorted {@code long} array and the finger tables as a single flat
+ * {@code int} array of node indices. Since the fingers of a node are sorted
+ * by distance, and most of the lowest ones are equal to its successor, only
+ * the distinct fingers of every node are stored, contiguously: the fingers of
+ * the node {@code n} are at the positions from {@code fingerOffsets[n]}
+ * (included, the successor) to {@code fingerOffsets[n + 1]} (excluded). A
+ * node of a ring of {@code N} nodes has about {@code log2(N)} distinct
+ * fingers, instead of {@code bits}. Routing is done directly on the arrays,
+ * using the primitive arithmetic of {@link Identifier}, so the bit length
+ * must be at most {@link Identifier#MAX_COMPACT_BITS}.
+ *
+ * A physical peer can run several virtual nodes, i.e., nodes having the same
+ * address but different identifiers, which are all stored in the same
+ * arrays. The {@code v}-th virtual node of a peer is identified by hashing its
+ * address and its port, with {@code v} in the 16 bits above the port, so the
+ * first virtual node has the same identifier of a peer without virtual
+ * nodes.
+ *
+ * A ring can be saved as a binary snapshot, which is just a copy of its
+ * arrays, and loaded back by memory-mapping the file, without computing any
+ * identifier or finger again.
+ */
+public class Ring implements Network {
+    /**
+     * The maximum number of virtual nodes per peer.
+     */
+    public static final int MAX_VIRTUAL_NODES = 1 << 16;
+
+    // The snapshot starts with the magic bytes "CHORDRNG", followed by the
+    // version, the bit length, the ordinal of the hash function, the number
+    // of nodes, of peers and of fingers. Then come the arrays ids, addresses,
+    // ports, peers (only if there are less peers than nodes), fingerOffsets
+    // and fingers, each one padded to a multiple of 8 bytes. Everything is
+    // little-endian
+    private static final long SNAPSHOT_MAGIC = 0x474E5244524F4843L;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_SIZE = 32;
+    private static final int SNAPSHOT_BUFFER_SIZE = 1 << 20;
+    private static final int SNAPSHOT_MAP_SIZE = 1 << 30;
+
+    private final int bits;
+    private final long[] ids;
+    private final int[] addresses;
+    private final char[] ports;
+    private final int[] peers;
+    private final int peerCount;
+    private final int[] fingerOffsets;
+    private final int[] fingers;
+
+    // Creates a ring by its arrays, which must be already sorted by id. The
+    // peers are null if every node is a different peer
+    private Ring(int bits, long[] ids, int[] addresses, char[] ports, int[] peers, int peerCount,
+                 int[][] fingers) {
+        this.bits = bits;
+        this.ids = ids;
+        this.addresses = addresses;
+        this.ports = ports;
+        this.peers = peers;
+        this.peerCount = peerCount;
+        this.fingerOffsets = fingers[0];
+        this.fingers = fingers[1];
+    }
+
+    /**
+     * Builds a ready-to-use Chord ring with {@code nodes} nodes, having random
+     * IPv4 addresses and ports, and finger tables of size {@code bits}.
+     *
+     * @param bits the size (in bits) of the identifier or, equivalently,
+     *             the size of the finger tables.
+     * @param nodes the number of nodes in the ring.
+     * @return a new {@link Ring}.
+     * @throws IllegalArgumentException if {@code bits} is greater than
+     * {@link Identifier#MAX_COMPACT_BITS}.
+     */
+    public static Ring build(int bits, int nodes) {
+        return build(bits, nodes, 1);
+    }
+
+    /**
+     * Builds a ready-to-use Chord ring with {@code nodes} physical peers,
+     * having random IPv4 addresses and ports, each one running
+     * {@code virtualNodes} virtual nodes, with finger tables of size
+     * {@code bits}. If a virtual node has the same identifier of another one,
+     * its peer is replaced by a new random one, so the ring has exactly
+     * {@code nodes*virtualNodes} nodes.
+     *
+     * @param bits the size (in bits) of the identifier or, equivalently,
+     *             the size of the finger tables.
+     * @param nodes the number of physical peers in the ring.
+     * @param virtualNodes the number of virtual nodes of each peer.
+     * @return a new {@link Ring}.
+     * @throws IllegalArgumentException if {@code bits} is greater than
+     * {@link Identifier#MAX_COMPACT_BITS}, or {@code virtualNodes} is not
+     * between 1 and {@link Ring#MAX_VIRTUAL_NODES}, or the ring would have
+     * more than 2^31 - 1 nodes.
+     */
+    public static Ring build(int bits, int nodes, int virtualNodes) {
+        return build(bits, nodes, virtualNodes, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Builds a ring as in {@link Ring#build(int, int, int)}, drawing the
+     * addresses and ports of the peers from a {@link SplittableRandom} with
+     * the given seed, so that the same seed always gives the same ring.
+     *
+     * @param bits the size (in bits) of the identifier or, equivalently,
+     *             the size of the finger tables.
+     * @param nodes the number of physical peers in the ring.
+     * @param virtualNodes the number of virtual nodes of each peer.
+     * @param seed the seed of the addresses and ports.
+     * @return a new {@link Ring}.
+     * @throws IllegalArgumentException if {@code bits} is greater than
+     * {@link Identifier#MAX_COMPACT_BITS}, or {@code virtualNodes} is not
+     * between 1 and {@link Ring#MAX_VIRTUAL_NODES}, or the ring would have
+     * more than 2^31 - 1 nodes.
+     */
+    public static Ring build(int bits, int nodes, int virtualNodes, long seed) {
+        checkBitLength(bits);
+
+        if (virtualNodes < 1 || virtualNodes > MAX_VIRTUAL_NODES || (long) nodes*virtualNodes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Virtual nodes must be between 1 and " + MAX_VIRTUAL_NODES
+                    + ", and at most 2^31 - 1 in total.");
+
+        Identifier.setBitLength(bits);
+        SplittableRandom random = new SplittableRandom(seed);
+        int size = nodes*virtualNodes;
+        long[] sockets = new long[nodes];
+        long[] ids = new long[size];
+        long[] owners = new long[size];
+
+        for (int p = 0, k = 0; p < nodes; p++) {
+            sockets[p] = randomSocket(random);
+
+            for (int v = 0; v < virtualNodes; v++, k++) {
+                ids[k] = Identifier.position(sockets[p] | (long) v << 16);
+                owners[k] = p;
+            }
+        }
+
+        sort(ids, owners);
+        boolean[] redraw = new boolean[nodes];
+        int redrawn = 0, filled = 0;
+
+        for (int i = 1; i < size; i++)
+            if (ids[i] == ids[i - 1] && !redraw[(int) owners[i]]) {
+                redraw[(int) owners[i]] = true;
+                redrawn++;
+            }
+
+        for (int i = 0; i < size; i++) {
+            if (redraw[(int) owners[i]])
+                continue;
+
+            ids[filled] = ids[i];
+            owners[filled++] = owners[i];
+        }
+
+        // The colliding peers are redrawn one at a time, checking their ids
+        // against the sorted ones and the ones already redrawn, so that even
+        // a nearly full ring is not sorted again at every collision
+        long[] newIds = new long[redrawn*virtualNodes];
+        long[] newOwners = new long[redrawn*virtualNodes];
+        HashSet<Long> taken = new HashSet<>();
+        int added = 0;
+
+        for (int p = 0; p < nodes; p++) {
+            if (!redraw[p])
+                continue;
+
+            while (true) {
+                sockets[p] = randomSocket(random);
+                int v = 0;
+
+                for (; v < virtualNodes; v++) {
+                    long id = Identifier.position(sockets[p] | (long) v << 16);
+
+                    if (Arrays.binarySearch(ids, 0, filled, id) >= 0 || !taken.add(id))
+                        break;
+
+                    newIds[added + v] = id;
+                    newOwners[added + v] = p;
+                }
+
+                if (v == virtualNodes)
+                    break;
+
+                for (int u = 0; u < v; u++)
+                    taken.remove(newIds[added + u]);
+            }
+
+            added += virtualNodes;
+        }
+
+        sort(newIds, newOwners);
+
+        // Merges the redrawn ids into the sorted ones, from the end
+        for (int i = filled - 1, j = added - 1, k = size - 1; j >= 0; k--)
+            if (i >= 0 && ids[i] > newIds[j]) {
+                ids[k] = ids[i];
+                owners[k] = owners[i--];
+            } else {
+                ids[k] = newIds[j];
+                owners[k] = newOwners[j--];
+            }
+
+        int[] addresses = new int[size];
+        char[] ports = new char[size];
+        int[] peers = virtualNodes == 1? null : new int[size];
+
+        for (int i = 0; i < size; i++) {
+            long socket = sockets[(int) owners[i]];
+            addresses[i] = (int) (socket >>> 32);
+            ports[i] = (char) socket;
+
+            if (peers != null)
+                peers[i] = (int) owners[i];
+        }
+
+        return new Ring(bits, ids, addresses, ports, peers, nodes, computeFingers(bits, ids));
+    }
+
+    /**
+     * Converts the given collection of {@link Node}s to a {@link Ring}, using
+     * the current bit length. Every {@link Node} must have an IPv4 address.
+     *
+     * @param network the {@link Node}s of the network, with their finger
+     *                tables already initialized.
+     * @return a new {@link Ring} with the same nodes and finger tables.
+     * @throws IllegalArgumentException if the current bit length is greater
+     * than {@link Identifier#MAX_COMPACT_BITS}.
+     */
+    public static Ring of(Collection<Node> network) {
+        int bits = Identifier.getBitLength();
+        checkBitLength(bits);
+        NodeNetwork nodes = new NodeNetwork(network);
+        int size = nodes.size();
+        long[] ids = new long[size];
+        int[] addresses = new int[size];
+        char[] ports = new char[size];
+        int[] peers = nodes.getPeerCount() == size? null : new int[size];
+        int[] fingerOffsets = new int[size + 1];
+        int[] fingers = new int[size*bits];
+
+        for (int i = 0; i < size; i++) {
+            Node node = nodes.get(i);
+            byte[] address = node.getAddress().getAddress().getAddress();
+            ids[i] = node.getId().longValue();
+            addresses[i] = (address[0] & 0xFF) << 24 | (address[1] & 0xFF) << 16
+                    | (address[2] & 0xFF) << 8 | (address[3] & 0xFF);
+            ports[i] = (char) node.getAddress().getPort();
+            int count = fingerOffsets[i];
+
+            if (peers != null)
+                peers[i] = nodes.getPeer(i);
+
+            for (int j = 0; j < bits; j++)
+                if (j == 0 || node.getFingerTable()[j] != node.getFingerTable()[j - 1])
+                    fingers[count++] = node.getFingerTable()[j].index;
+
+            fingerOffsets[i + 1] = count;
+        }
+
+        return new Ring(bits, ids, addresses, ports, peers, nodes.getPeerCount(),
+                new int[][] {fingerOffsets, Arrays.copyOf(fingers, fingerOffsets[size])});
+    }
+
+    /**
+     * Loads a {@link Ring} from a binary snapshot written by
+     * {@link Ring#writeSnapshot(FileChannel)}. The file is memory-mapped and
+     * its arrays are copied in bulk, so loading takes about the time needed to
+     * read the file. The bit length and the hash function of
+     * {@link Identifier} are set to the ones of the snapshot.
+     *
+     * @param channel the channel of the snapshot file, open for reading.
+     * @return the {@link Ring} stored in the snapshot.
+     * @throws IOException if an I/O error occurs, or the file is not a valid
+     * snapshot.
+     */
+    public static Ring readSnapshot(FileChannel channel) throws IOException {
+        if (channel.size() < SNAPSHOT_HEADER_SIZE)
+            throw new IOException("Invalid ring snapshot.");
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SNAPSHOT_HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        if (header.getLong() != SNAPSHOT_MAGIC || header.getInt() != SNAPSHOT_VERSION)
+            throw new IOException("Invalid ring snapshot.");
+
+        int bits = header.getInt(), hash = header.getInt();
+        int size = header.getInt(), peerCount = header.getInt(), fingerCount = header.getInt();
+        boolean hasPeers = peerCount < size;
+        long length = SNAPSHOT_HEADER_SIZE + align(8L*size) + align(4L*size) + align(2L*size)
+                + (hasPeers? align(4L*size) : 0) + align(4L*size + 4) + align(4L*fingerCount);
+
+        if (bits < 1 || bits > Identifier.MAX_COMPACT_BITS || hash < 0 || hash >= HashFunction.values().length
+                || size < 1 || peerCount < 1 || peerCount > size || fingerCount < size
+                || channel.size() != length)
+            throw new IOException("Invalid ring snapshot.");
+
+        long[] ids = new long[size];
+        int[] addresses = new int[size];
+        char[] ports = new char[size];
+        int[] peers = hasPeers? new int[size] : null;
+        int[] fingerOffsets = new int[size + 1];
+        int[] fingers = new int[fingerCount];
+        long position = read(channel, SNAPSHOT_HEADER_SIZE, ids);
+        position = read(channel, position, addresses);
+        position = read(channel, position, ports);
+
+        if (hasPeers)
+            position = read(channel, position, peers);
+
+        position = read(channel, position, fingerOffsets);
+        read(channel, position, fingers);
+
+        if (fingerOffsets[0] != 0 || fingerOffsets[size] != fingerCount)
+            throw new IOException("Invalid ring snapshot.");
+
+        // The identifiers must be sorted and every node must have a
+        // successor, so that a corrupt snapshot fails here and not while
+        // routing
+        for (int i = 0; i < size; i++)
+            if (ids[i] >>> bits != 0 || i > 0 && ids[i] <= ids[i - 1] || fingerOffsets[i + 1] <= fingerOffsets[i]
+                    || hasPeers && (peers[i] < 0 || peers[i] >= peerCount))
+                throw new IOException("Invalid ring snapshot.");
+
+        for (int finger : fingers)
+            if (finger < 0 || finger >= size)
+                throw new IOException("Invalid ring snapshot.");
+
+        Identifier.setBitLength(bits);
+        Identifier.setHashFunction(HashFunction.values()[hash]);
+
+        return new Ring(bits, ids, addresses, ports, peers, peerCount, new int[][] {fingerOffsets, fingers});
+    }
+
+    /**
+     * Writes the ring as a binary snapshot, which can be loaded with
+     * {@link Ring#readSnapshot(FileChannel)}. The snapshot also stores the
+     * current hash function of {@link Identifier}, which should be the one
+     * used to build the ring.
+     *
+     * @param channel the channel of the snapshot file, open for writing.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeSnapshot(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(bits)
+                .putInt(Identifier.getHashFunction().ordinal()).putInt(ids.length).putInt(peerCount)
+                .putInt(fingerOffsets[ids.length]);
+        write(channel, buffer, ids);
+        write(channel, buffer, addresses);
+        write(channel, buffer, ports);
+
+        if (peers != null)
+            write(channel, buffer, peers);
+
+        write(channel, buffer, fingerOffsets);
+        write(channel, buffer, fingers);
+        flush(channel, buffer);
+    }
+
+    /**
+     * Converts this {@link Ring} to a list of {@link Node}s, sorted by
+     * {@link Identifier}, with their predecessors, finger tables and
+     * successor lists set.
+     *
+     * @return the {@link Node}s of the ring.
+     */
+    public List<Node> toNodes() {
+        Identifier.setBitLength(bits);
+        Node[] nodes = new Node[ids.length];
+
+        for (int i = 0; i < ids.length; i++) {
+            nodes[i] = new Node(getAddress(i), new Identifier(ids[i]));
+            nodes[i].index = i;
+        }
+
+        for (int i = 0; i < ids.length; i++) {
+            Node[] fingerTable = nodes[i].getFingerTable();
+            Node[] successors = nodes[i].getSuccessorList();
+            nodes[i].setPredecessor(nodes[getPredecessor(i)]);
+
+            for (int j = 0; j < bits; j++)
+                fingerTable[j] = nodes[getFinger(i, j)];
+
+            for (int j = 0; j < successors.length; j++)
+                successors[j] = nodes[(i + j + 1) % ids.length];
+        }
+
+        return Arrays.asList(nodes);
+    }
+
+    /**
+     * Returns the size (in bits) of the identifiers of the ring.
+     *
+     * @return the bit length of the ring.
+     */
+    public int getBitLength() {
+        return bits;
+    }
+
+    /**
+     * Returns the raw identifier of the given node.
+     *
+     * @param node the index of the node.
+     * @return the identifier of the node.
+     */
+    public long getId(int node) {
+        return ids[node];
+    }
+
+    @Override
+    public Identifier getIdentifier(int node) {
+        return new Identifier(ids[node]);
+    }
+
+    @Override
+    public InetSocketAddress getAddress(int node) {
+        int address = addresses[node];
+        byte[] bytes = {(byte) (address >>> 24), (byte) (address >>> 16), (byte) (address >>> 8), (byte) address};
+
+        try {
+            return new InetSocketAddress(InetAddress.getByAddress(bytes), ports[node]);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the index of the predecessor of the given node.
+     *
+     * @param node the index of the node.
+     * @return the index of its predecessor.
+     */
+    public int getPredecessor(int node) {
+        return node == 0? ids.length - 1 : node - 1;
+    }
+
+    @Override
+    public int getFinger(int node, int i) {
+        long id = ids[node];
+
+        // The i-th finger is the first one at distance at least 2^i, where
+        // the node itself is at distance 2^bits
+        for (int k = fingerOffsets[node]; k < fingerOffsets[node + 1] - 1; k++)
+            if (fingers[k] == node || Identifier.subtract(ids[fingers[k]], id) >= 1L << i)
+                return fingers[k];
+
+        return fingers[fingerOffsets[node + 1] - 1];
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public int getPeer(int node) {
+        return peers == null? node : peers[node];
+    }
+
+    @Override
+    public int getPeerCount() {
+        return peerCount;
+    }
+
+    @Override
+    public int getRoutingTableSize(int node) {
+        return fingerOffsets[node + 1] - fingerOffsets[node];
+    }
+
+    @Override
+    public long getGap(int node) {
+        return Identifier.subtract(ids[node], ids[getPredecessor(node)]);
+    }
+
+    @Override
+    public int route(int source, long key, IntConsumer visitor) {
+        return pathTo(source, Identifier.position(key), visitor);
+    }
+
+    // Computes the path from the source node to the successor of the
+    // position
+    private int pathTo(int source, long position, IntConsumer visitor) {
+        int node = source;
+
+        while (true) {
+            visitor.accept(node);
+            long id = ids[node];
+
+            if (Identifier.isBetween(position, ids[getPredecessor(node)], id))
+                return node;
+
+            int successor = fingers[fingerOffsets[node]];
+
+            if (Identifier.isBetween(position, id, ids[successor])) {
+                visitor.accept(successor);
+
+                return successor;
+            }
+
+            int next = closestPrecedingNode(node, position);
+
+            // Stops when the network is circular
+            if (next == node)
+                return node;
+
+            node = next;
+        }
+    }
+
+    /**
+     * Routes a batch of lookups as in {@link Network#route(int, long[], int,
+     * int[], int[], BatchVisitor)}. The positions of the keys are sorted by
+     * clockwise distance from {@code source} and routed together: every node
+     * of a path receives a contiguous range of positions, and splits it with
+     * binary searches into the positions it owns, the ones owned by its
+     * successor and the ones forwarded to each finger. The work of a hop is
+     * therefore logarithmic in the number of keys that take it, and the nodes
+     * shared by the paths of a range are visited once.
+     *
+     * @param source the index of the node starting the lookups.
+     * @param keys the keys to be searched, in {@code keys[0, count)}.
+     * @param count the number of keys.
+     * @param owners the array that receives the index of the last node in
+     *               the path of every key.
+     * @param pathLengths the array that receives the number of hops of the
+     *                    path of every key.
+     * @param visitor the {@link BatchVisitor} that receives the nodes of the
+     *                paths.
+     */
+    @Override
+    public void route(int source, long[] keys, int count, int[] owners, int[] pathLengths, BatchVisitor visitor) {
+        if (count == 0)
+            return;
+
+        long[] distances = new long[count], sorted = new long[count];
+        int indexBits = 32 - Integer.numberOfLeadingZeros(Math.max(count - 1, 0));
+        int shift = Math.max(bits + indexBits - 63, 0);
+
+        // Sorts the distances together with the indices of the keys, packed
+        // in a single long, dropping the low bits of the distances that do
+        // not fit
+        for (int i = 0; i < count; i++) {
+            distances[i] = Identifier.subtract(Identifier.position(keys[i]), ids[source]);
+            sorted[i] = distances[i] >>> shift << indexBits | i;
+        }
+
+        Arrays.sort(sorted);
+        int[] order = new int[count];
+        long[] positions = new long[count];
+
+        for (int k = 0; k < count; k++) {
+            int i = (int) (sorted[k] & ((1L << indexBits) - 1)), j = k;
+
+            // Restores the order of the keys whose distances only differ in
+            // the dropped bits, which are close to each other
+            for (; j > 0 && distances[order[j - 1]] > distances[i]; j--)
+                order[j] = order[j - 1];
+
+            order[j] = i;
+        }
+
+        for (int k = 0; k < count; k++)
+            positions[k] = Identifier.add(distances[order[k]], ids[source]);
+
+        route(source, positions, order, 0, count, 0, owners, pathLengths, visitor);
+    }
+
+    // Routes the positions in [from, to), sorted by clockwise distance from
+    // the node, which is reached after the given number of hops, and whose
+    // keys have indices order[from, to). A position at distance 0 is owned
+    // by the node, the ones owned by its successor follow, then the ones to
+    // be forwarded and finally the other ones owned by the node
+    private void route(int node, long[] positions, int[] order, int from, int to, int hops, int[] owners,
+                       int[] pathLengths, BatchVisitor visitor) {
+        // A single position is routed hop by hop, without searching
+        if (to - from == 1) {
+            int[] visits = {0};
+            int owner = pathTo(node, positions[from], hop -> {
+                visitor.accept(hop, 1);
+                visits[0]++;
+            });
+            end(from, to, owner, hops + visits[0] - 1, order, owners, pathLengths);
+
+            return;
+        }
+
+        visitor.accept(node, to - from);
+        long id = ids[node];
+        int predecessor = getPredecessor(node), successor = fingers[fingerOffsets[node]];
+        int first = search(positions, from, to, id, 0);
+        int last = predecessor == node? to
+                : search(positions, first, to, id, Identifier.subtract(ids[predecessor], id));
+        int forwarded = successor == node? first
+                : search(positions, first, last, id, Identifier.subtract(ids[successor], id));
+
+        end(from, first, node, hops, order, owners, pathLengths);
+        end(last, to, node, hops, order, owners, pathLengths);
+
+        if (forwarded > first) {
+            visitor.accept(successor, forwarded - first);
+            end(first, forwarded, successor, hops + 1, order, owners, pathLengths);
+        }
+
+        // The closest preceding node of the farthest position is also the
+        // closest preceding node of every closer position it precedes
+        for (int high = last, low; high > forwarded; high = low) {
+            int next = closestPrecedingNode(node, positions[high - 1]);
+
+            // Stops when the network is circular
+            if (next == node) {
+                end(forwarded, high, node, hops, order, owners, pathLengths);
+
+                return;
+            }
+
+            low = search(positions, forwarded, high, id, Identifier.subtract(ids[next], id) - 1);
+            route(next, positions, order, low, high, hops + 1, owners, pathLengths, visitor);
+        }
+    }
+
+    // Returns the first index in [from, to) whose position is farther than
+    // the given distance from the origin, given that positions are sorted by
+    // clockwise distance from it
+    private static int search(long[] positions, int from, int to, long origin, long distance) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+
+            if (Identifier.subtract(positions[middle], origin) > distance)
+                to = middle;
+            else
+                from = middle + 1;
+        }
+
+        return from;
+    }
+
+    // Sets the last node and the path length of the keys with indices
+    // order[from, to)
+    private static void end(int from, int to, int node, int hops, int[] order, int[] owners, int[] pathLengths) {
+        for (int k = from; k < to; k++) {
+            owners[order[k]] = node;
+            pathLengths[order[k]] = hops;
+        }
+    }
+
+    // Computes the closest preceding node of the position
+    private int closestPrecedingNode(int node, long position) {
+        long id = ids[node];
+
+        for (int i = fingerOffsets[node + 1] - 1; i >= fingerOffsets[node]; i--)
+            if (Identifier.isBetween(ids[fingers[i]], id, position))
+                return fingers[i];
+
+        return node;
+    }
+
+    // Writes the array through the buffer, followed by its padding
+    private static void write(FileChannel channel, ByteBuffer buffer, long[] array) throws IOException {
+        for (int i = 0, count; i < array.length; i += count) {
+            if (buffer.remaining() < 8)
+                flush(channel, buffer);
+
+            count = Math.min(array.length - i, buffer.remaining()/8);
+            buffer.asLongBuffer().put(array, i, count);
+            buffer.position(buffer.position() + 8*count);
+        }
+
+        pad(channel, buffer, 8L*array.length);
+    }
+
+    // Writes the array through the buffer, followed by its padding
+    private static void write(FileChannel channel, ByteBuffer buffer, int[] array) throws IOException {
+        for (int i = 0, count; i < array.length; i += count) {
+            if (buffer.remaining() < 4)
+                flush(channel, buffer);
+
+            count = Math.min(array.length - i, buffer.remaining()/4);
+            buffer.asIntBuffer().put(array, i, count);
+            buffer.position(buffer.position() + 4*count);
+        }
+
+        pad(channel, buffer, 4L*array.length);
+    }
+
+    // Writes the array through the buffer, followed by its padding
+    private static void write(FileChannel channel, ByteBuffer buffer, char[] array) throws IOException {
+        for (int i = 0, count; i < array.length; i += count) {
+            if (buffer.remaining() < 2)
+                flush(channel, buffer);
+
+            count = Math.min(array.length - i, buffer.remaining()/2);
+            buffer.asCharBuffer().put(array, i, count);
+            buffer.position(buffer.position() + 2*count);
+        }
+
+        pad(channel, buffer, 2L*array.length);
+    }
+
+    // Writes the zeros needed to align a section of the given length
+    private static void pad(FileChannel channel, ByteBuffer buffer, long length) throws IOException {
+        if (buffer.remaining() < 8)
+            flush(channel, buffer);
+
+        for (long i = length; i < align(length); i++)
+            buffer.put((byte) 0);
+    }
+
+    // Writes the content of the buffer to the channel and clears it
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+
+        buffer.clear();
+    }
+
+    // Reads the array from the mapped channel, starting from position, and
+    // returns the position of the next section
+    private static long read(FileChannel channel, long position, long[] array) throws IOException {
+        for (int i = 0, count; i < array.length; i += count, position += 8L*count) {
+            count = Math.min(array.length - i, SNAPSHOT_MAP_SIZE/8);
+            channel.map(FileChannel.MapMode.READ_ONLY, position, 8L*count).order(ByteOrder.LITTLE_ENDIAN)
+                    .asLongBuffer().get(array, i, count);
+        }
+
+        return align(position);
+    }
+
+    // Reads the array from the mapped channel, starting from position, and
+    // returns the position of the next section
+    private static long read(FileChannel channel, long position, int[] array) throws IOException {
+        for (int i = 0, count; i < array.length; i += count, position += 4L*count) {
+            count = Math.min(array.length - i, SNAPSHOT_MAP_SIZE/4);
+            channel.map(FileChannel.MapMode.READ_ONLY, position, 4L*count).order(ByteOrder.LITTLE_ENDIAN)
+                    .asIntBuffer().get(array, i, count);
+        }
+
+        return align(position);
+    }
+
+    // Reads the array from the mapped channel, starting from position, and
+    // returns the position of the next section
+    private static long read(FileChannel channel, long position, char[] array) throws IOException {
+        for (int i = 0, count; i < array.length; i += count, position += 2L*count) {
+            count = Math.min(array.length - i, SNAPSHOT_MAP_SIZE/2);
+            channel.map(FileChannel.MapMode.READ_ONLY, position, 2L*count).order(ByteOrder.LITTLE_ENDIAN)
+                    .asCharBuffer().get(array, i, count);
+        }
+
+        return align(position);
+    }
+
+    // Rounds the length up to a multiple of 8 bytes
+    private static long align(long length) {
+        return (length + 7) & -8L;
+    }
+
+    // Computes the distinct fingers of the given sorted ids and their
+    // offsets, in parallel over contiguous segments of the ring. The fingers
+    // are swept twice, first to count them and then to store them, so that
+    // they never take more memory than their exact size
+    private static int[][] computeFingers(int bits, long[] ids) {
+        int n = ids.length;
+        int segments = Math.min(Runtime.getRuntime().availableProcessors()*4, (n + 1023)/1024);
+        int segment = (n + segments - 1)/segments;
+        int[] offsets = new int[n + 1];
+
+        IntStream.range(0, segments).parallel().forEach(s ->
+                computeFingers(bits, ids, offsets, null, s*segment, Math.min((s + 1)*segment, n)));
+
+        for (int j = 0; j < n; j++)
+            offsets[j + 1] += offsets[j];
+
+        int[] fingers = new int[offsets[n]];
+
+        IntStream.range(0, segments).parallel().forEach(s ->
+                computeFingers(bits, ids, offsets, fingers, s*segment, Math.min((s + 1)*segment, n)));
+
+        return new int[][] {offsets, fingers};
+    }
+
+    // Computes the distinct fingers of the nodes in the range [from, to). If
+    // fingers is null, only stores the number of fingers of the node j in
+    // offsets[j + 1], otherwise stores its fingers starting from offsets[j].
+    // The ring is unrolled twice, so that the k-th node with k >= n has id
+    // ids[k - n] + 2^bits. Since the targets id + 2^i grow with the node, the
+    // index of their successors can only move forward: for every level, a
+    // pointer is placed with a binary search on the first node of the range
+    // and then swept along the ring, for a total of O(bits*(to - from)) steps
+    private static void computeFingers(int bits, long[] ids, int[] offsets, int[] fingers, int from, int to) {
+        int n = ids.length;
+        long base = 1L << bits;
+        int[] pointers = new int[bits];
+
+        for (int i = 0; i < bits && from < to; i++) {
+            long target = ids[from] + (1L << i);
+
+            if (Long.compareUnsigned(target, base) < 0)
+                pointers[i] = lowerBound(ids, target);
+            else
+                pointers[i] = n + lowerBound(ids, target - base);
+        }
+
+        for (int j = from; j < to; j++) {
+            int count = 0, last = -1;
+
+            for (int i = 0; i < bits; i++) {
+                long target = ids[j] + (1L << i);
+                int k = pointers[i];
+
+                while (Long.compareUnsigned(k < n? ids[k] : ids[k - n] + base, target) < 0)
+                    k++;
+
+                pointers[i] = k;
+                int finger = k < n? k : k - n;
+
+                if (finger == last)
+                    continue;
+
+                if (fingers != null)
+                    fingers[offsets[j] + count] = finger;
+
+                count++;
+                last = finger;
+            }
+
+            if (fingers == null)
+                offsets[j + 1] = count;
+        }
+    }
+
+    // Returns the index of the first id greater than or equal to the target
+    private static int lowerBound(long[] ids, long target) {
+        int index = Arrays.binarySearch(ids, target);
+
+        return index < 0? -index - 1 : index;
+    }
+
+    // Sorts the non-negative keys, moving the values along (LSD radix sort)
+    private static void sort(long[] keys, long[] values) {
+        long[] keyBuffer = new long[keys.length];
+        long[] valueBuffer = new long[keys.length];
+        long[] srcKeys = keys, srcValues = values;
+        int[] count = new int[257];
+
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(count, 0);
+
+            for (long key : srcKeys)
+                count[(int) (key >>> shift & 0xFF) + 1]++;
+
+            for (int i = 0; i < 256; i++)
+                count[i + 1] += count[i];
+
+            for (int i = 0; i < srcKeys.length; i++) {
+                int index = count[(int) (srcKeys[i] >>> shift & 0xFF)]++;
+                keyBuffer[index] = srcKeys[i];
+                valueBuffer[index] = srcValues[i];
+            }
+
+            long[] swap = srcKeys;
+            srcKeys = keyBuffer;
+            keyBuffer = swap;
+            swap = srcValues;
+            srcValues = valueBuffer;
+            valueBuffer = swap;
+        }
+    }
+
+    // Draws a random IPv4 address and port, as address << 32 | port
+    private static long randomSocket(SplittableRandom random) {
+        return (long) random.nextInt() << 32 | random.nextInt(65536);
+    }
+
+    // Checks that the bit length fits the primitive engine of Identifier
+    private static void checkBitLength(int bits) {
+        if (bits > Identifier.MAX_COMPACT_BITS)
+            throw new IllegalArgumentException("Compact rings support at most "
+                    + Identifier.MAX_COMPACT_BITS + " bits.");
+    }
+}
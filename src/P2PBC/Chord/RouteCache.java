@@ -0,0 +1,154 @@
+package P2PBC.Chord;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class models the route cache of a {@link Node}, mapping the key
+ * ranges resolved by its recent lookups to their owners. Every route covers
+ * the keys between the predecessor of the owner (excluded) and the owner
+ * (included), and is indexed by the identifier of the owner, so that the
+ * route of a key is found with a single ceiling search. Routes to nodes that
+ * have left the network are dropped when found.
+ *
+ * The cache holds at most a fixed number of routes, and the eviction policy
+ * is implemented by the subclasses, which are created through
+ * {@link CachePolicy#create(int)}.
+ */
+public abstract class RouteCache {
+    private final TreeMap<Identifier, Route> routes = new TreeMap<>();
+    private final int capacity;
+    private long hits = 0;
+    private long misses = 0;
+
+    // Creates an empty cache with the given capacity
+    RouteCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be greater than 0.");
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the cached owner of the given identifier, if any.
+     *
+     * @param identifier the {@link Identifier} to be searched.
+     * @return the cached owner, or {@code null} if the cache has no route
+     * to {@code identifier}.
+     */
+    public Node get(Identifier identifier) {
+        Map.Entry<Identifier, Route> entry = routes.ceilingEntry(identifier);
+
+        if (entry == null)
+            entry = routes.firstEntry();
+
+        if (entry != null) {
+            Route route = entry.getValue();
+
+            if (!route.owner.isAlive()) {
+                remove(route);
+            } else if (identifier.isBetween(route.start, route.owner.getId())) {
+                hits++;
+                accessed(route);
+
+                return route.owner;
+            }
+        }
+
+        misses++;
+
+        return null;
+    }
+
+    /**
+     * Caches the route to the keys between {@code start} (excluded) and
+     * {@code owner} (included). If the cache is full, another route may be
+     * evicted, or the new one may be discarded.
+     *
+     * @param start the {@link Identifier} of the predecessor of the owner.
+     * @param owner the owner of the keys.
+     */
+    public void put(Identifier start, Node owner) {
+        Route route = routes.get(owner.getId());
+
+        if (route != null) {
+            route.start = start;
+            return;
+        }
+
+        route = new Route(start, owner);
+
+        if (routes.size() == capacity) {
+            Route victim = victim(route);
+
+            if (victim == null)
+                return;
+
+            remove(victim);
+        }
+
+        routes.put(owner.getId(), route);
+        added(route);
+    }
+
+    /**
+     * Returns the number of lookups of this cache that found a route.
+     *
+     * @return the number of hits.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups of this cache that did not find a route.
+     *
+     * @return the number of misses.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of cached routes.
+     *
+     * @return the size of the cache.
+     */
+    public int size() {
+        return routes.size();
+    }
+
+    // Called when a cached route is used
+    abstract void accessed(Route route);
+
+    // Called when a new route is cached
+    abstract void added(Route route);
+
+    // Called when a route is removed from the cache
+    abstract void removed(Route route);
+
+    // Chooses the route to be evicted to make room for the candidate, or
+    // returns null if the candidate must not be cached
+    abstract Route victim(Route candidate);
+
+    // Removes the route from the cache
+    private void remove(Route route) {
+        routes.remove(route.owner.getId());
+        removed(route);
+    }
+
+    // A cached route, with the bookkeeping fields of the eviction policies
+    static class Route {
+        Identifier start;
+        final Node owner;
+        Route previous;
+        Route next;
+        long frequency = 1;
+        long tick;
+
+        private Route(Identifier start, Node owner) {
+            this.start = start;
+            this.owner = owner;
+        }
+    }
+}
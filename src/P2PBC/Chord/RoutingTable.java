@@ -0,0 +1,93 @@
+package P2PBC.Chord;
+
+import java.util.function.IntConsumer;
+
+/**
+ * This interface models the routing tables of the nodes of a ring, i.e.,
+ * the overlay geometry used to route the lookups. Nodes are identified by
+ * their index in the ring, in increasing order of {@link Identifier}, as in
+ * a {@link Network}, so the same nodes can be routed with different
+ * geometries through an {@link OverlayNetwork}. Valid only if
+ * {@link Identifier#isCompact()} holds.
+ */
+public interface RoutingTable {
+    /**
+     * Returns the number of distinct entries in the routing table of the
+     * given node, i.e., the number of other nodes it has to keep track of.
+     *
+     * @param node the index of the node.
+     * @return the number of entries.
+     */
+    int getEntryCount(int node);
+
+    /**
+     * Returns the {@code i}-th entry of the routing table of the given node.
+     * The first entry is always the successor of the node.
+     *
+     * @param node the index of the node.
+     * @param i the index of the entry, from 0 to
+     *          {@link RoutingTable#getEntryCount(int)} {@code - 1}.
+     * @return the index of the node of the entry.
+     */
+    int getEntry(int node, int i);
+
+    /**
+     * Checks whether every hop is taken greedily, towards the entry that
+     * most closely precedes the key. In that case the entries of every node
+     * are sorted by increasing distance from it.
+     *
+     * @return {@code true} if the routing is greedy.
+     */
+    boolean isGreedy();
+
+    /**
+     * Computes the path from the {@code source} node to the successor of the
+     * given position, with the same semantics of
+     * {@link Network#route(int, long, IntConsumer)}.
+     *
+     * @param source the index of the node starting the lookup.
+     * @param position the raw position of the key in the ring.
+     * @param visitor the {@link IntConsumer} that receives the indices of the
+     *                nodes of the path.
+     * @return the index of the last node in the path.
+     */
+    int route(int source, long position, IntConsumer visitor);
+
+    /**
+     * Parses a routing table for the given sorted identifiers. The
+     * {@code spec} has one of the following forms:
+     *
+     *  - {@code base:[k]}:     Chord fingers in base {@code k}, i.e.,
+     *                          {@code k - 1} fingers per level, at distances
+     *                          {@code j*k^l}. {@code base:2} is classic
+     *                          Chord;
+     *  - {@code koorde:[k]}:   Koorde de Bruijn routing of degree {@code k},
+     *                          a power of 2;
+     *  - {@code symphony:[k]}: Symphony routing, with {@code k} random long
+     *                          links per node, drawn from the harmonic
+     *                          distribution.
+     *
+     * @param spec the specification of the routing table.
+     * @param ids the sorted raw identifiers of the nodes.
+     * @param seed the seed used by randomized routing tables.
+     * @return the corresponding {@link RoutingTable}.
+     * @throws IllegalArgumentException if {@code spec} is not a valid
+     * specification.
+     */
+    static RoutingTable parse(String spec, long[] ids, long seed) {
+        String[] parts = spec.trim().toLowerCase().split(":");
+
+        try {
+            if (parts[0].equals("base") && parts.length == 2)
+                return new BaseRoutingTable(ids, Integer.parseInt(parts[1]));
+
+            if (parts[0].equals("koorde") && parts.length == 2)
+                return new KoordeRoutingTable(ids, Integer.parseInt(parts[1]));
+
+            if (parts[0].equals("symphony") && parts.length == 2)
+                return new SymphonyRoutingTable(ids, Integer.parseInt(parts[1]), seed);
+        } catch (NumberFormatException ignore) {}
+
+        throw new IllegalArgumentException("Invalid geometry: " + spec);
+    }
+}
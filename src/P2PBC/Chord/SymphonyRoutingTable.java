@@ -0,0 +1,53 @@
+package P2PBC.Chord;
+
+import java.util.SplittableRandom;
+
+/**
+ * This {@link RoutingTable} implements the long links of Symphony: besides
+ * its successor, every node keeps {@code k} links to the successors of
+ * random points, at a fraction {@code x} of the ring drawn from the harmonic
+ * distribution {@code p(x) = 1/(x ln n)} on {@code [1/n, 1)}, where
+ * {@code n} is the number of nodes. Lookups are routed greedily and take
+ * {@code O(log^2(n)/k)} hops on average, with a constant number of entries
+ * per node.
+ */
+public class SymphonyRoutingTable extends GreedyRoutingTable {
+    private final int links;
+    private final SplittableRandom random;
+
+    /**
+     * Creates the routing tables with {@code k} long links per node of the
+     * given sorted identifiers.
+     *
+     * @param ids the sorted raw identifiers of the nodes.
+     * @param k the number of long links of every node.
+     * @param seed the seed of the random links.
+     * @throws IllegalArgumentException if {@code k} is negative or greater
+     * than 64.
+     */
+    public SymphonyRoutingTable(long[] ids, int k, long seed) {
+        super(ids);
+
+        if (k < 0 || k > 64)
+            throw new IllegalArgumentException("The number of links must be between 0 and 64.");
+
+        links = k;
+        random = new SplittableRandom(seed);
+        build();
+    }
+
+    @Override
+    long[] distances(int node) {
+        long[] distances = new long[links + 1];
+        long max = (1L << Identifier.getBitLength()) - 1;
+        double logNodes = Math.log(ids.length);
+        distances[0] = 1;
+
+        for (int i = 1; i <= links; i++) {
+            double fraction = Math.exp(logNodes*(random.nextDouble() - 1));
+            distances[i] = Math.max(1, Math.min(max, (long) Math.scalb(fraction, Identifier.getBitLength())));
+        }
+
+        return distances;
+    }
+}
@@ -0,0 +1,72 @@
+package P2PBC.Chord;
+
+/**
+ * This {@link RouteCache} implements the TinyLFU admission policy on top of
+ * an LRU cache. The frequency of the owner of every lookup is estimated by a
+ * count-min sketch of 4 rows of counters, which are halved after every
+ * {@code 10*capacity} lookups, so that old popularity fades. When the cache
+ * is full, a new route is admitted only if its owner is estimated to be more
+ * popular than the owner of the LRU victim, which protects the frequently
+ * used routes from one-off lookups.
+ */
+class TinyLfuRouteCache extends LruRouteCache {
+    private static final int DEPTH = 4;
+    private final int[] sketch;
+    private final int mask;
+    private final int sampleSize;
+    private int samples = 0;
+
+    // Creates an empty cache with the given capacity
+    TinyLfuRouteCache(int capacity) {
+        super(capacity);
+        int width = Integer.highestOneBit(Math.max(16, 4*Math.min(capacity, 1 << 24) - 1)) << 1;
+        sketch = new int[DEPTH*width];
+        mask = width - 1;
+        sampleSize = 10*capacity;
+    }
+
+    @Override
+    public void put(Identifier start, Node owner) {
+        record(owner);
+        super.put(start, owner);
+    }
+
+    @Override
+    Route victim(Route candidate) {
+        Route victim = super.victim(candidate);
+
+        return frequency(candidate.owner) > frequency(victim.owner)? victim : null;
+    }
+
+    // Increments the estimated frequency of the owner, aging the sketch
+    // periodically
+    private void record(Node owner) {
+        long hash = owner.getId().hashCode();
+
+        for (int i = 0; i < DEPTH; i++)
+            sketch[i*(mask + 1) + slot(hash, i)]++;
+
+        if (++samples == sampleSize) {
+            for (int i = 0; i < sketch.length; i++)
+                sketch[i] >>>= 1;
+
+            samples /= 2;
+        }
+    }
+
+    // Estimates the frequency of the owner, as the minimum of its counters
+    private int frequency(Node owner) {
+        long hash = owner.getId().hashCode();
+        int frequency = Integer.MAX_VALUE;
+
+        for (int i = 0; i < DEPTH; i++)
+            frequency = Math.min(frequency, sketch[i*(mask + 1) + slot(hash, i)]);
+
+        return frequency;
+    }
+
+    // Computes the slot of the hash in the i-th row of the sketch
+    private int slot(long hash, int i) {
+        return (int) HashFunction.MIX64.hash(hash + i) & mask;
+    }
+}
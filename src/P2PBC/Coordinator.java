@@ -1,20 +1,27 @@
 package P2PBC;
 
 import P2PBC.Chord.*;
+import P2PBC.Net.LoadGenerator;
+import P2PBC.Net.LoopbackCluster;
+import P2PBC.Simulation.*;
 
 import org.apache.commons.cli.*;
 
-import org.json.JSONException;
 import org.json.JSONObject;
-import org.json.JSONTokener;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * This class manages the creation and simulation of the Chord Lookup protocol.
  */
 public class Coordinator {
+    private static final long PROGRESS_PERIOD = 200;
+    private static final long METRICS_PERIOD = 5000;
 
     /**
      * Creates a Chord network and then simulates the lookup protocol.
@@ -23,177 +30,773 @@ public class Coordinator {
      *
      *  - {@code -n | --nodes [arg]}:   specifies the number of nodes in the
      *                                  network (default: 1024);
+     *  - {@code -v | --virtual [arg]}: specifies the number of virtual nodes
+     *                                  of each node, whose statistics are
+     *                                  aggregated (default: 1);
      *  - {@code -b | --bits [arg]}:    specifies the number of bits of the
      *                                  {@link Identifier}s (default: 16);
      *  - {@code -s | --sif [arg]}:     exports the generated network as a SIF
      *                                  file with path {@code arg};
      *  - {@code -d | --dot [arg]}:     exports the generated network as a DOT
      *      *                           file with path {@code arg};
-     *  - {@code -o | --out [arg]}:     stores the statistics to a JSON file
-     *                                  with path {@code arg}. If it exists,
-     *                                  appends the results (default:
-     *                                  "./log.json")
+     *  - {@code --graphml [arg]}:      exports the generated network as a
+     *                                  GraphML file with path {@code arg};
+     *  - {@code --edges [arg]}:        exports the generated network as an
+     *                                  edge list with path {@code arg};
+     *                                  Exported files whose path ends with
+     *                                  ".gz" are compressed with gzip;
+     *  - {@code --simple-graph}:       exports every edge only once, even if
+     *                                  a node has the same finger more than
+     *                                  once;
+     *  - {@code --save-ring [arg]}:   saves the generated network as a
+     *                                  binary {@link Ring} snapshot with path
+     *                                  {@code arg} (requires BITS <= 63);
+     *  - {@code --load-ring [arg]}:   loads the network from the binary
+     *                                  {@link Ring} snapshot with path
+     *                                  {@code arg}, instead of building it,
+     *                                  together with its bits, nodes,
+     *                                  virtual nodes and hash function;
+     *  - {@code -o | --out [arg]}:     appends the statistics to a JSON Lines
+     *                                  file with path {@code arg} (default:
+     *                                  "./log.jsonl");
+     *  - {@code --convert [arg]}:      converts the JSON Lines log to a JSON
+     *                                  file with path {@code arg}, having the
+     *                                  form {"experiments": [...]}, and
+     *                                  exits;
      *  - {@code -l | --lookups [arg]}: specifies the number of lookups to be
      *                                  performed for each node (default: 1);
+     *  - {@code -t | --threads [arg]}: specifies the number of threads used
+     *                                  to run the simulation (default: the
+     *                                  number of available cores);
+     *  - {@code --precision [arg]}:    performs the lookups in rounds, and
+     *                                  stops as soon as the 95% confidence
+     *                                  intervals of the mean path length and
+     *                                  of the queries and end nodes loads are
+     *                                  within a relative precision
+     *                                  {@code arg}, performing at most
+     *                                  {@code -l} lookups per node (default:
+     *                                  0, every lookup);
+     *  - {@code --seed [arg]}:         specifies the seed from which every
+     *                                  random choice of the experiment is
+     *                                  drawn, so that the same seed gives the
+     *                                  same network and the same statistics
+     *                                  with any number of threads (default: a
+     *                                  random seed, recorded in the log);
+     *  - {@code --compact}:           stores the network as a compact
+     *                                  {@link Ring} of primitive arrays,
+     *                                  instead of a collection of
+     *                                  {@link Node}s (requires BITS <= 63);
+     *  - {@code --hash [arg]}:         specifies the {@link HashFunction}
+     *                                  used to map keys and nodes to the ring
+     *                                  (default: sha1);
+     *  - {@code --churn [arg]}:        simulates the network under churn for
+     *                                  {@code arg} seconds, instead of the
+     *                                  static lookups (not compatible with
+     *                                  {@code --compact});
+     *  - {@code --join-rate [arg]}:    specifies the average number of joins
+     *                                  per second under churn (default: 1);
+     *  - {@code --leave-rate [arg]}:   specifies the average number of leaves
+     *                                  per second under churn (default: 1);
+     *  - {@code --stabilize [arg]}:    specifies the average stabilization
+     *                                  period, in seconds (default: 30);
+     *  - {@code --successors [arg]}:   specifies the size of the successor
+     *                                  lists (default: 4);
+     *  - {@code --latency [arg]}:      also simulates the lookups in time,
+     *                                  with both iterative and recursive
+     *                                  routing, using the
+     *                                  {@link LatencyModel} {@code arg}
+     *                                  (constant:MS, uniform:MIN:MAX or
+     *                                  coordinates:MS);
+     *  - {@code --lookup-rate [arg]}:  specifies the average number of
+     *                                  lookups started per second in the
+     *                                  latency simulation (default: 1000);
+     *  - {@code --service-time [arg]}: specifies the time, in milliseconds,
+     *                                  needed by a node to process a message
+     *                                  in the latency simulation (default:
+     *                                  0);
+     *  - {@code --geometry [arg]}:     routes the network with the
+     *                                  {@link RoutingTable} {@code arg},
+     *                                  instead of the Chord fingers (base:K,
+     *                                  koorde:K or symphony:K; requires
+     *                                  BITS <= 63, not compatible with
+     *                                  {@code --churn}, {@code --cache} and
+     *                                  {@code --proximity});
+     *  - {@code --proximity [arg]}:    makes the routing aware of the
+     *                                  latency model, with proximity
+     *                                  neighbour selection among K candidates
+     *                                  and/or proximity route selection,
+     *                                  through a {@link ProximityNetwork}
+     *                                  (pns:K, prs or pns:K+prs; requires
+     *                                  {@code --latency} and BITS <= 63);
+     *  - {@code --runtime [arg]}:      also runs every node as a server on
+     *                                  the loopback interface and performs
+     *                                  the lookups iteratively over TCP, with
+     *                                  {@code arg} lookups in flight, through
+     *                                  a {@link LoadGenerator} (requires
+     *                                  BITS <= 63);
+     *  - {@code --replication [arg]}:  also simulates a key-value store on
+     *                                  the network, where every node puts and
+     *                                  then gets its keys, and every value is
+     *                                  replicated on {@code arg} distinct
+     *                                  peers along the successor list,
+     *                                  through a {@link StorageSimulator};
+     *  - {@code --value-size [arg]}:   specifies the size of the values of
+     *                                  the key-value store, in bytes
+     *                                  (default: 64);
+     *  - {@code --cache [arg]}:        enables a {@link RouteCache} on every
+     *                                  node, with the {@link CachePolicy}
+     *                                  {@code arg} (lru, lfu or tinylfu; not
+     *                                  compatible with {@code --compact});
+     *  - {@code --cache-size [arg]}:   specifies the capacity of the route
+     *                                  caches (default: 64);
+     *  - {@code --keys [arg]}:         specifies the {@link KeyDistribution}
+     *                                  of the searched keys (uniform,
+     *                                  zipf:S, zipf:S:KEYS, hotspot:KEYS:P or
+     *                                  trace:FILE; default: uniform);
+     *  - {@code --rates [arg]}:        specifies the distribution of the
+     *                                  number of lookups of the nodes
+     *                                  (uniform or zipf:S; default:
+     *                                  uniform);
+     *  - {@code --sweep [arg]}:        runs every configuration of a
+     *                                  parameter {@link Sweep} in the same
+     *                                  JVM, concurrently when possible,
+     *                                  appending each result to the log as
+     *                                  soon as it is ready (e.g.
+     *                                  nodes=2..65536:x2,lookups=32768..1:/2).
+     *                                  The option can be repeated, to
+     *                                  combine several sweeps;
+     *  - {@code --metrics [arg]}:      appends a snapshot of the live
+     *                                  {@link Metrics} to a JSON Lines file
+     *                                  with path {@code arg} every 5
+     *                                  seconds, and at the end;
+     *  - {@code --jmx}:                exposes the live {@link Metrics}
+     *                                  through JMX, as the MBean
+     *                                  {@code P2PBC:type=Metrics};
      *  - {@code -h | --help}:          shows a help text and exits.
      *
      * @param args an array of {@link String}s containing optional settings.
      */
     public static void main(String[] args) {
-        Integer nBits = 16, nNodes = 1024, nIters = 1;
-        Options options =  new Options();
+        Options options = createOptions();
         CommandLineParser parser = new DefaultParser();
         HelpFormatter formatter = new HelpFormatter();
         CommandLine cmd = null;
 
-        Option nodesOpt = new Option("n", "nodes", true, "Number of nodes (default: 1024)");
-        Option bitsOpt = new Option("b", "bits", true, "Number of bits (default: 16)");
-        Option SIFOpt = new Option("s", "sif", true, "Export graph to SIF file");
-        Option DOTOpt = new Option("d", "dot", true, "Export graph to DOT file");
-        Option logOpt = new Option("o", "out", true,
-                "Store log statistics to JSON file. If it exists, append the results (default: \"./log.json\")");
-        Option helpOpt = new Option("h", "help", false, "Show this help text and exit");
-        Option itOpt = new Option("l", "lookups", true,
-                "Number of lookup tests per node (default: 1)");
-
-        options.addOption(nodesOpt).addOption(bitsOpt).addOption(SIFOpt).addOption(DOTOpt)
-                .addOption(logOpt).addOption(helpOpt).addOption(itOpt);
-
         try {
             cmd = parser.parse(options, args);
+        } catch (ParseException e) {
+            System.err.println("Parsing Error: " + e.getMessage());
+            formatter.printHelp("chord-simulator", options);
+            System.exit(1);
+        }
+
+        if (cmd.hasOption("help")) {
+            formatter.printHelp("chord-simulator", options);
+            System.exit(0);
+        }
+
+        File logFile = new File(cmd.getOptionValue("out", "log.jsonl"));
+
+        if (cmd.getOptionValue("convert") != null) {
+            try (Reader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(logFile), "utf-8"));
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(cmd.getOptionValue("convert")), "utf-8"))) {
+                ExperimentLog.convert(reader, writer);
+            } catch (IOException e) {
+                System.err.println("I/O Exception: " + e.getMessage());
+                System.exit(1);
+            }
+
+            System.exit(0);
+        }
+
+        Metrics metrics = new Metrics();
+        ExperimentLog metricsLog = null;
+        ProgressReporter metricsDump = null;
 
-            if (cmd.hasOption("help")) {
-                formatter.printHelp("chord-simulator", options);
-                System.exit(0);
+        if (cmd.hasOption("jmx"))
+            metrics.register();
+
+        if (cmd.getOptionValue("metrics") != null) {
+            try {
+                metricsLog = new ExperimentLog(new File(cmd.getOptionValue("metrics")));
+            } catch (IOException e) {
+                System.err.println("I/O Exception: " + e.getMessage());
+                System.exit(1);
             }
 
+            ExperimentLog log = metricsLog;
+            metricsDump = new ProgressReporter(metrics, METRICS_PERIOD, m -> {
+                try {
+                    log.append(new JSONObject(m.snapshot()));
+                } catch (IOException e) {
+                    System.err.println("I/O Exception: " + e.getMessage());
+                }
+            });
+        }
+
+        if (cmd.getOptionValues("sweep") != null) {
+            boolean succeeded = false;
+
+            try (ExperimentLog log = new ExperimentLog(logFile)) {
+                Sweep sweep = new Sweep(options, args, cmd.getOptionValues("sweep"));
+                System.out.println("Running " + sweep.size() + " configurations...");
+                succeeded = sweep.run(log, metrics);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            } catch (IOException e) {
+                System.err.println("I/O Exception: " + e.getMessage());
+                System.exit(1);
+            } catch (InterruptedException e) {
+                System.err.println("Sweep interrupted.");
+                System.exit(1);
+            }
+
+            close(metricsDump, metricsLog);
+            System.exit(succeeded? 0 : 1);
+        }
+
+        Map<String, Object> results = null;
+
+        try {
+            results = run(cmd, System.out, metrics);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("I/O Exception: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.err.println("Simulation interrupted.");
+            System.exit(1);
+        }
+
+        /* **************************************** WRITE STATISTICS ************************************************ */
+
+        System.out.print("Writing statistics... ");
+        long time = System.nanoTime();
+
+        try (ExperimentLog log = new ExperimentLog(logFile)) {
+            log.append(new JSONObject(results));
+        } catch (IOException e) {
+            System.err.println("I/O Exception: " + e.getMessage());
+        }
+
+        metrics.addTime(Metrics.Phase.WRITE, System.nanoTime() - time);
+        metrics.addExperiment();
+        System.out.println("Done.");
+        close(metricsDump, metricsLog);
+    }
+
+    // Runs a single experiment with the settings of cmd, printing its
+    // progress on console and recording it in metrics, and returns its
+    // results. Invalid settings are reported as IllegalArgumentExceptions
+    static Map<String, Object> run(CommandLine cmd, PrintStream console, Metrics metrics)
+            throws IOException, InterruptedException {
+        Integer nBits = 16, nNodes = 1024, nIters = 1, nVirtual = 1;
+        Integer nThreads = Runtime.getRuntime().availableProcessors();
+        HashFunction hashFunction = HashFunction.SHA1;
+        Double duration = 0., joinRate = 1., leaveRate = 1., stabilizePeriod = 30.;
+        Integer nSuccessors = 4;
+        Double lookupRate = 1000., serviceTime = 0.;
+        CachePolicy cachePolicy = null;
+        String keysSpec = "uniform", ratesSpec = "uniform";
+        Double ratesExponent = null;
+        Integer cacheSize = 64;
+        Integer concurrency = null;
+        String proximity = cmd.getOptionValue("proximity");
+        String geometry = cmd.getOptionValue("geometry");
+        Integer replication = null, valueSize = 64;
+        Long seed = null;
+        Double precision = 0.;
+
+        try {
             if (cmd.getOptionValue("nodes") != null)
                 nNodes = Integer.parseInt(cmd.getOptionValue("nodes"));
 
+            if (cmd.getOptionValue("virtual") != null)
+                nVirtual = Integer.parseInt(cmd.getOptionValue("virtual"));
+
             if (cmd.getOptionValue("bits") != null)
                 nBits = Integer.parseInt(cmd.getOptionValue("bits"));
 
             if (cmd.getOptionValue("lookups") != null)
                 nIters = Integer.parseInt(cmd.getOptionValue("lookups"));
+
+            if (cmd.getOptionValue("threads") != null)
+                nThreads = Integer.parseInt(cmd.getOptionValue("threads"));
+
+            if (cmd.getOptionValue("precision") != null)
+                precision = Double.parseDouble(cmd.getOptionValue("precision"));
+
+            if (cmd.getOptionValue("seed") != null)
+                seed = Long.parseLong(cmd.getOptionValue("seed"));
+
+            if (cmd.getOptionValue("hash") != null)
+                hashFunction = HashFunction.parse(cmd.getOptionValue("hash"));
+
+            if (cmd.getOptionValue("cache") != null)
+                cachePolicy = CachePolicy.parse(cmd.getOptionValue("cache"));
+
+            if (cmd.getOptionValue("cache-size") != null)
+                cacheSize = Integer.parseInt(cmd.getOptionValue("cache-size"));
+
+            if (cmd.getOptionValue("runtime") != null)
+                concurrency = Integer.parseInt(cmd.getOptionValue("runtime"));
+
+            if (cmd.getOptionValue("replication") != null)
+                replication = Integer.parseInt(cmd.getOptionValue("replication"));
+
+            if (cmd.getOptionValue("value-size") != null)
+                valueSize = Integer.parseInt(cmd.getOptionValue("value-size"));
+
+            if (cmd.getOptionValue("churn") != null)
+                duration = Double.parseDouble(cmd.getOptionValue("churn"));
+
+            if (cmd.getOptionValue("join-rate") != null)
+                joinRate = Double.parseDouble(cmd.getOptionValue("join-rate"));
+
+            if (cmd.getOptionValue("leave-rate") != null)
+                leaveRate = Double.parseDouble(cmd.getOptionValue("leave-rate"));
+
+            if (cmd.getOptionValue("stabilize") != null)
+                stabilizePeriod = Double.parseDouble(cmd.getOptionValue("stabilize"));
+
+            if (cmd.getOptionValue("successors") != null)
+                nSuccessors = Integer.parseInt(cmd.getOptionValue("successors"));
+
+            keysSpec = cmd.getOptionValue("keys", keysSpec);
+            ratesSpec = cmd.getOptionValue("rates", ratesSpec);
+
+            if (ratesSpec.toLowerCase().startsWith("zipf:"))
+                ratesExponent = Double.parseDouble(ratesSpec.substring(5));
+            else if (!ratesSpec.equalsIgnoreCase("uniform"))
+                throw new IllegalArgumentException("Invalid request rates: " + ratesSpec);
+
+            if (cmd.getOptionValue("lookup-rate") != null)
+                lookupRate = Double.parseDouble(cmd.getOptionValue("lookup-rate"));
+
+            if (cmd.getOptionValue("service-time") != null)
+                serviceTime = Double.parseDouble(cmd.getOptionValue("service-time"));
         } catch (NumberFormatException e) {
-            System.err.println("Arguments must be integers.");
-            System.exit(1);
-        } catch (ParseException e) {
-            System.err.println("Parsing Error: " + e.getMessage());
-            formatter.printHelp("chord-simulator", options);
-            System.exit(1);
+            throw new IllegalArgumentException("Arguments must be numbers.");
         }
 
-        if (nBits < 1 || nNodes < 1) {
-            System.err.println("Arguments must be greater than 0.");
-            System.exit(1);
-        }
+        if (nBits < 1 || nNodes < 1 || nVirtual < 1 || nIters < 0 || nThreads < 1 || nSuccessors < 1 || cacheSize < 1
+                || stabilizePeriod <= 0 || lookupRate <= 0 || serviceTime < 0 || !(precision >= 0))
+            throw new IllegalArgumentException("Arguments must be greater than 0.");
 
-        if (nNodes > (1 << nBits)) {
-            System.err.println("Number of nodes must be 0 < NODES < 2^BITS.");
-            System.exit(1);
-        }
+        if (nBits < 31 && nNodes > (1 << nBits))
+            throw new IllegalArgumentException("Number of nodes must be 0 < NODES < 2^BITS.");
 
-        JSONObject log = new JSONObject();
-        String logPath = "log.json";
+        // Peers are redrawn when a virtual node collides, so the ring must
+        // not be too crowded
+        if (nVirtual > 1 && (nVirtual > Ring.MAX_VIRTUAL_NODES || (long) nNodes*nVirtual > Integer.MAX_VALUE
+                || nBits < 62 && (long) nNodes*nVirtual > 1L << (nBits - 1)))
+            throw new IllegalArgumentException("Virtual nodes must be at most " + Ring.MAX_VIRTUAL_NODES
+                    + ", with NODES*VIRTUAL <= min(2^(BITS-1), 2^31 - 1).");
 
-        if (cmd.getOptionValue("out") != null) {
-            logPath = cmd.getOptionValue("out");
+        boolean compact = cmd.hasOption("compact");
 
-            try(Reader reader = new BufferedReader(new InputStreamReader(
-                    new FileInputStream(cmd.getOptionValue("out")), "utf-8"))) {
-                log = new JSONObject(new JSONTokener(reader));
-            } catch (JSONException e) {
-                log = new JSONObject();
-            } catch (FileNotFoundException ignore) {} catch (IOException e) {
-                System.err.println("I/O Exception: " + e.getMessage());
-                System.exit(1);
+        if (compact && nBits > Identifier.MAX_COMPACT_BITS)
+            throw new IllegalArgumentException("Compact networks must have BITS <= "
+                    + Identifier.MAX_COMPACT_BITS + ".");
+
+        if (compact && cachePolicy != null)
+            throw new IllegalArgumentException("Route caches require a non-compact network.");
+
+        String saveRing = cmd.getOptionValue("save-ring"), loadRing = cmd.getOptionValue("load-ring");
+
+        if (saveRing != null && loadRing == null && nBits > Identifier.MAX_COMPACT_BITS)
+            throw new IllegalArgumentException("Ring snapshots require BITS <= "
+                    + Identifier.MAX_COMPACT_BITS + ".");
+
+        boolean churn = cmd.getOptionValue("churn") != null;
+
+        if (churn && (compact || duration <= 0 || nVirtual > 1))
+            throw new IllegalArgumentException("Churn requires a positive duration and a non-compact network "
+                    + "without virtual nodes.");
+
+        if (churn && precision > 0)
+            throw new IllegalArgumentException("Early stopping requires a static network.");
+
+        String latency = cmd.getOptionValue("latency");
+
+        if (latency != null && (churn || (long) nIters*nNodes*nVirtual > Integer.MAX_VALUE))
+            throw new IllegalArgumentException("Latency simulations require a static network and at most "
+                    + "2^31 - 1 lookups.");
+
+        if (concurrency != null && (concurrency < 1 || churn || nBits > Identifier.MAX_COMPACT_BITS
+                || (long) nIters*nNodes*nVirtual > Integer.MAX_VALUE))
+            throw new IllegalArgumentException("The runtime requires a positive concurrency, a static network, "
+                    + "BITS <= " + Identifier.MAX_COMPACT_BITS + " and at most 2^31 - 1 lookups.");
+
+        if (geometry != null && (nBits > Identifier.MAX_COMPACT_BITS || churn || cachePolicy != null
+                || proximity != null))
+            throw new IllegalArgumentException("Overlay geometries require BITS <= " + Identifier.MAX_COMPACT_BITS
+                    + ", and are not compatible with churn, route caches and proximity.");
+
+        if (proximity != null && (latency == null || nBits > Identifier.MAX_COMPACT_BITS))
+            throw new IllegalArgumentException("Proximity requires a latency model and BITS <= "
+                    + Identifier.MAX_COMPACT_BITS + ".");
+
+        if (replication != null && (replication < 1 || valueSize < 8 || churn))
+            throw new IllegalArgumentException("The key-value store requires a positive replication, values of "
+                    + "at least 8 bytes and a static network.");
+
+        KeyDistribution keys = KeyDistribution.parse(keysSpec);
+
+        if (seed == null)
+            seed = new SplittableRandom().nextLong();
+
+        // Every phase has its own seed, drawn in a fixed order, so that
+        // enabling a phase does not change the random choices of the others
+        SplittableRandom seeds = new SplittableRandom(seed);
+        long buildSeed = seeds.nextLong(), geometrySeed = seeds.nextLong(), ratesSeed = seeds.nextLong();
+        long modelSeed = seeds.nextLong(), churnSeed = seeds.nextLong(), lookupSeed = seeds.nextLong();
+        long latencySeed = seeds.nextLong(), runtimeSeed = seeds.nextLong(), storageSeed = seeds.nextLong();
+
+        /* **************************************** GENERATE NETWORK ************************************************ */
+
+        Identifier.setHashFunction(hashFunction);
+        Node.setSuccessorListSize(nSuccessors);
+        Node.setRouteCache(cachePolicy, cacheSize);
+        Collection<Node> nodes = null;
+        Ring ring = null;
+        Network network;
+        long time = System.nanoTime();
+
+        if (loadRing != null) {
+            console.print("Loading network... ");
+
+            try (FileChannel channel = FileChannel.open(Paths.get(loadRing))) {
+                ring = Ring.readSnapshot(channel);
             }
+
+            nBits = ring.getBitLength();
+            nNodes = ring.getPeerCount();
+            nVirtual = ring.size()/nNodes;
+
+            if (!compact)
+                nodes = ring.toNodes();
+        } else {
+            console.print("Building network... ");
+
+            if (compact)
+                ring = Ring.build(nBits, nNodes, nVirtual, buildSeed);
+            else
+                nodes = Node.buildNetwork(nBits, nNodes, nVirtual, buildSeed);
         }
 
-        /* **************************************** GENERATE NETWORK ************************************************ */
+        network = compact? ring : new NodeNetwork(nodes);
 
-        System.out.print("Building network... ");
-        ArrayList<Node> network = new ArrayList<>(Node.buildNetwork(nBits, nNodes));
-        System.out.println("Done.");
+        if (geometry != null) {
+            network = OverlayNetwork.parse(geometry, network, geometrySeed);
+
+            // The nodes of the runtime route through the closest preceding
+            // finger
+            if (concurrency != null && !((OverlayNetwork) network).getRoutingTable().isGreedy())
+                throw new IllegalArgumentException("The runtime requires a greedy geometry.");
+        }
+
+        long buildTime = System.nanoTime() - time;
+        metrics.addTime(Metrics.Phase.BUILD, buildTime);
+        console.println("Done.");
+
+        if (churn && nVirtual > 1 || latency != null && (long) nIters*network.size() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Churn requires a network without virtual nodes, and latency "
+                    + "simulations at most 2^31 - 1 lookups.");
+
+        Workload workload = ratesExponent == null? Workload.uniform(keys, nIters)
+                : Workload.zipfRates(keys, network.size(), nIters, ratesExponent, ratesSeed);
+        LatencyModel model = latency == null? null : LatencyModel.parse(latency, network, modelSeed);
+
+        if (proximity != null) {
+            console.print("Selecting proximity fingers... ");
+            network = ProximityNetwork.parse(proximity, network, model);
+            console.println("Done.");
+
+            // The nodes of the runtime route through the closest preceding
+            // finger
+            if (concurrency != null && ((ProximityNetwork) network).isRouting())
+                throw new IllegalArgumentException("The runtime does not support proximity route selection.");
+        }
+
+        time = System.nanoTime();
 
-        if (cmd.getOptionValue("sif") != null)
-            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
-                    new FileOutputStream(cmd.getOptionValue("sif")), "utf-8"))) {
-                System.out.print("Writing SIF file... ");
-                Node.writeSIFFile(writer, network);
-                System.out.println("Done.");
+        if (saveRing != null)
+            try (FileChannel channel = FileChannel.open(Paths.get(saveRing), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                console.print("Writing ring snapshot... ");
+                (compact? ring : Ring.of(nodes)).writeSnapshot(channel);
+                console.println("Done.");
             } catch (IOException e) {
                 System.err.println("I/O Exception: " + e.getMessage());
             }
 
-        if (cmd.getOptionValue("dot") != null)
-            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
-                    new FileOutputStream(cmd.getOptionValue("dot")), "utf-8"))) {
-                System.out.print("Writing DOT file... ");
-                Node.writeDOTFile(writer, network);
-                System.out.println("Done.");
+        EnumMap<GraphFormat, String> exports = new EnumMap<>(GraphFormat.class);
+        exports.put(GraphFormat.SIF, cmd.getOptionValue("sif"));
+        exports.put(GraphFormat.DOT, cmd.getOptionValue("dot"));
+        exports.put(GraphFormat.GRAPHML, cmd.getOptionValue("graphml"));
+        exports.put(GraphFormat.EDGES, cmd.getOptionValue("edges"));
+        exports.values().removeIf(Objects::isNull);
+        GraphExporter exporter = exports.isEmpty()? null : new GraphExporter(network);
+        boolean simpleGraph = cmd.hasOption("simple-graph");
+
+        for (Map.Entry<GraphFormat, String> export : exports.entrySet()) {
+            String path = export.getValue();
+
+            try (OutputStream out = path.endsWith(".gz")? new GZIPOutputStream(new FileOutputStream(path), 1 << 16)
+                    : new FileOutputStream(path)) {
+                console.print("Writing " + export.getKey() + " file... ");
+                exporter.write(out, export.getKey(), !simpleGraph);
+                console.println("Done.");
             } catch (IOException e) {
                 System.err.println("I/O Exception: " + e.getMessage());
             }
+        }
+
+        long exportTime = System.nanoTime() - time;
+        metrics.addTime(Metrics.Phase.EXPORT, exportTime);
 
         /* **************************************** START SIMULATION ************************************************ */
 
-        System.out.print("Running simulations: 0 of " + nIters*nNodes + ".\r");
-        Random random = new Random();
-        byte[] bytes = new byte[32];
-        HashMap<Integer, Integer> gapHist = new HashMap<>();
-        HashMap<Integer, Integer> pathLengthHist = new HashMap<>();
-        HashMap<Node, Integer> queries = new HashMap<>();
-        HashMap<Node, Integer> endNodes = new HashMap<>();
-        int iters = 0;
-
-        for (Node node: network) {
-            Identifier gap = node.getId().subtract(node.getPredecessor().getId());
-            gapHist.compute(gap.getValue(), (k, v) -> v == null ? 1 : v + 1);
-            queries.putIfAbsent(node, 0);
-            endNodes.putIfAbsent(node, 0);
-
-            for (int i = 0; i < nIters; i++) {
-                random.nextBytes(bytes);
-                Identifier id = new Identifier(bytes);
-                List<Node> path = node.getPathTo(id);
-                pathLengthHist.compute(path.size() - 1, (k, v) -> v == null ? 1 : v + 1);
-                path.forEach(n -> queries.compute(n, (k, v) -> v == null ? 1 : v + 1));
-                endNodes.compute(path.get(path.size() - 1), (k, v) -> v == null ? 1 : v + 1);
-                System.out.print("Running simulations: " + ++iters + " of " + nIters*nNodes + ".\r");
+        HashMap<String, Object> results = new HashMap<>();
+        results.put("bits", nBits);
+        results.put("nodes", nNodes);
+        results.put("virtualNodes", nVirtual);
+        results.put("iterations", nIters);
+        results.put("geometry", geometry == null? "chord" : geometry);
+        results.put("seed", seed);
+        time = System.nanoTime();
+
+        if (churn) {
+            HashMap<String, Object> churnResults = new HashMap<>();
+            ChurnSimulator churnSimulator = new ChurnSimulator(nodes, joinRate, leaveRate,
+                    stabilizePeriod, nIters*nNodes/duration);
+            console.print("Running churn simulation... ");
+            churnSimulator.run(duration, churnSeed);
+            churnSimulator.writeTo(churnResults);
+            churnResults.put("duration", duration);
+            churnResults.put("joinRate", joinRate);
+            churnResults.put("leaveRate", leaveRate);
+            churnResults.put("stabilizePeriod", stabilizePeriod);
+            churnResults.put("successors", nSuccessors);
+            nodes = churnSimulator.getNodes();
+            results.put("churn", churnResults);
+            console.println("Done.");
+        } else {
+            Simulator simulator = new Simulator(network, workload);
+            results.put("keys", keysSpec);
+            results.put("rates", ratesSpec);
+            long total = simulator.getTotalLookups(), offset = metrics.getLookups();
+
+            ProgressReporter progress = new ProgressReporter(metrics, PROGRESS_PERIOD,
+                    m -> console.print("Running simulations: " + (m.getLookups() - offset) + " of " + total + ".\r"));
+
+            try {
+                Statistics statistics = simulator.run(nThreads, lookupSeed, precision, metrics);
+                statistics.writeTo(results);
+
+                if (precision > 0) {
+                    HashMap<String, Object> adaptiveResults = new HashMap<>();
+                    adaptiveResults.put("precision", precision);
+                    adaptiveResults.put("rounds", simulator.getRounds());
+                    adaptiveResults.put("lookups", statistics.getLookups());
+                    adaptiveResults.put("pathLengthError", statistics.getPathLengthError());
+                    adaptiveResults.put("endNodesError", statistics.getEndNodesError());
+                    adaptiveResults.put("queriesError", statistics.getQueriesError());
+
+                    // The errors of too few lookups are infinite, and JSON has
+                    // no infinite numbers
+                    adaptiveResults.values().removeIf(value -> value instanceof Double
+                            && ((Double) value).isInfinite());
+                    results.put("adaptive", adaptiveResults);
+                }
+            } finally {
+                progress.close();
             }
+
+            console.println();
         }
 
-        /* **************************************** WRITE STATISTICS ************************************************ */
+        if (latency != null) {
+            HashMap<String, Object> latencyResults = new HashMap<>();
+
+            for (boolean recursive : new boolean[] {false, true}) {
+                HashMap<String, Object> routingResults = new HashMap<>();
+                LatencySimulator latencySimulator = new LatencySimulator(network, model, nIters*network.size(),
+                        lookupRate, serviceTime, recursive);
+                console.print("Running " + (recursive? "recursive" : "iterative") + " latency simulation... ");
+                latencySimulator.run(latencySeed);
+                latencySimulator.writeTo(routingResults);
+                latencyResults.put(recursive? "recursive" : "iterative", routingResults);
+                console.println("Done.");
+            }
 
-        System.out.print("\nWriting statistics... ");
-        HashMap<String, Object> results = new HashMap<>();
-        HashMap<Integer, Integer> queryHist = new HashMap<>();
-        HashMap<Integer, Integer> endNodeHist = new HashMap<>();
-        queries.values().forEach(q -> queryHist.compute(q, (k, v) -> v == null ? 1 : v + 1));
-        endNodes.values().forEach(n -> endNodeHist.compute(n, (k, v) -> v == null ? 1 : v + 1));
+            latencyResults.put("model", latency);
+            latencyResults.put("proximity", proximity);
+            latencyResults.put("lookupRate", lookupRate);
+            latencyResults.put("serviceTime", serviceTime);
+            results.put("latency", latencyResults);
+        }
 
-        results.put("bits", nBits);
-        results.put("nodes", nNodes);
-        results.put("iterations", nIters);
-        results.put("gaps", gapHist);
-        results.put("pathLengths", pathLengthHist);
-        results.put("queries", queryHist);
-        results.put("endNodes", endNodeHist);
+        if (concurrency != null) {
+            HashMap<String, Object> runtimeResults = new HashMap<>();
+            console.print("Running lookups over TCP... ");
+
+            try (LoopbackCluster cluster = new LoopbackCluster(network, nThreads)) {
+                LoadGenerator generator = new LoadGenerator(network, cluster, nIters*network.size(), concurrency);
+                generator.run(runtimeSeed);
+                generator.writeTo(runtimeResults);
+            }
+
+            runtimeResults.put("threads", nThreads);
+            results.put("runtime", runtimeResults);
+            console.println("Done.");
+        }
+
+        if (replication != null) {
+            HashMap<String, Object> storageResults = new HashMap<>();
+            console.print("Running storage simulation... ");
+            new StorageSimulator(network, workload, replication, valueSize).run(nThreads, storageSeed)
+                    .writeTo(storageResults);
+            results.put("storage", storageResults);
+            console.println("Done.");
+        }
+
+        if (cachePolicy != null) {
+            HashMap<String, Object> cacheResults = new HashMap<>();
+            long hits = 0, misses = 0;
+
+            for (Node node : nodes) {
+                hits += node.getRouteCache().getHits();
+                misses += node.getRouteCache().getMisses();
+            }
 
-        log.append("experiments", new JSONObject(results));
+            cacheResults.put("policy", cachePolicy.name().toLowerCase());
+            cacheResults.put("capacity", cacheSize);
+            cacheResults.put("hits", hits);
+            cacheResults.put("misses", misses);
+            cacheResults.put("hitRate", hits + misses == 0? 0. : (double) hits/(hits + misses));
+            results.put("cache", cacheResults);
+        }
 
-        File logFile = new File(logPath);
-        logFile.getParentFile().mkdirs();
+        long simulateTime = System.nanoTime() - time;
+        metrics.addTime(Metrics.Phase.SIMULATE, simulateTime);
+        HashMap<String, Object> timings = new HashMap<>();
+        timings.put("build", buildTime/1e9);
+        timings.put("export", exportTime/1e9);
+        timings.put("simulate", simulateTime/1e9);
+        results.put("timings", timings);
 
-        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream(logFile), "utf-8"))) {
-            log.write(writer, 3,0);
+        return results;
+    }
+
+    // Stops the periodic dump of the metrics, if any, and closes its log
+    private static void close(ProgressReporter metricsDump, ExperimentLog metricsLog) {
+        if (metricsDump == null)
+            return;
+
+        metricsDump.close();
+
+        try {
+            metricsLog.close();
         } catch (IOException e) {
             System.err.println("I/O Exception: " + e.getMessage());
         }
+    }
 
-        System.out.println("Done.");
+    // Creates the command line options
+    private static Options createOptions() {
+        Options options = new Options();
+
+        Option nodesOpt = new Option("n", "nodes", true, "Number of nodes (default: 1024)");
+        Option virtualOpt = new Option("v", "virtual", true, "Number of virtual nodes per node (default: 1)");
+        Option bitsOpt = new Option("b", "bits", true, "Number of bits (default: 16)");
+        Option SIFOpt = new Option("s", "sif", true, "Export graph to SIF file");
+        Option DOTOpt = new Option("d", "dot", true, "Export graph to DOT file");
+        Option GraphMLOpt = new Option(null, "graphml", true, "Export graph to GraphML file");
+        Option edgesOpt = new Option(null, "edges", true,
+                "Export graph to edge list file (exports ending with .gz are gzipped)");
+        Option simpleGraphOpt = new Option(null, "simple-graph", false,
+                "Export every edge only once, skipping repeated fingers");
+        Option saveRingOpt = new Option(null, "save-ring", true,
+                "Save the generated network as a binary ring snapshot (requires BITS <= 63)");
+        Option loadRingOpt = new Option(null, "load-ring", true,
+                "Load the network, with its bits, nodes and hash function, from a binary ring snapshot");
+        Option sweepOpt = new Option(null, "sweep", true,
+                "Run every configuration of a parameter sweep in the same JVM, e.g. "
+                        + "nodes=2..65536:x2,lookups=32768..1:/2");
+        Option metricsOpt = new Option(null, "metrics", true,
+                "Append a snapshot of the live metrics to JSON Lines file arg every 5 seconds");
+        Option jmxOpt = new Option(null, "jmx", false, "Expose the live metrics through JMX as P2PBC:type=Metrics");
+        Option logOpt = new Option("o", "out", true,
+                "Append log statistics to JSON Lines file (default: \"./log.jsonl\")");
+        Option convertOpt = new Option(null, "convert", true,
+                "Convert the JSON Lines log to a JSON file with path arg and exit");
+        Option helpOpt = new Option("h", "help", false, "Show this help text and exit");
+        Option itOpt = new Option("l", "lookups", true,
+                "Number of lookup tests per node (default: 1)");
+        Option threadsOpt = new Option("t", "threads", true,
+                "Number of simulation threads (default: number of available cores)");
+        Option precisionOpt = new Option(null, "precision", true,
+                "Stop the lookups when the 95% confidence intervals of the mean path length and of the loads "
+                        + "are within relative precision arg, with at most -l lookups per node (default: 0)");
+        Option seedOpt = new Option(null, "seed", true,
+                "Seed of every random choice, giving the same results with any number of threads "
+                        + "(default: random)");
+        Option compactOpt = new Option(null, "compact", false,
+                "Store the network as a compact ring of primitive arrays (requires BITS <= 63)");
+        Option hashOpt = new Option(null, "hash", true,
+                "Hash function, one of sha1, mix64 or xxhash (default: sha1)");
+        Option churnOpt = new Option(null, "churn", true,
+                "Simulate the network under churn for arg seconds, instead of the static lookups");
+        Option joinRateOpt = new Option(null, "join-rate", true,
+                "Average number of joins per second under churn (default: 1)");
+        Option leaveRateOpt = new Option(null, "leave-rate", true,
+                "Average number of leaves per second under churn (default: 1)");
+        Option stabilizeOpt = new Option(null, "stabilize", true,
+                "Average stabilization period under churn, in seconds (default: 30)");
+        Option successorsOpt = new Option(null, "successors", true, "Size of the successor lists (default: 4)");
+        Option latencyOpt = new Option(null, "latency", true,
+                "Simulate the lookup latency with the model constant:MS, uniform:MIN:MAX or coordinates:MS");
+        Option lookupRateOpt = new Option(null, "lookup-rate", true,
+                "Average number of lookups per second in the latency simulation (default: 1000)");
+        Option geometryOpt = new Option(null, "geometry", true,
+                "Route with the overlay geometry base:K, koorde:K or symphony:K instead of the Chord fingers");
+        Option proximityOpt = new Option(null, "proximity", true,
+                "Route by latency with proximity neighbour and/or route selection: pns:K, prs or pns:K+prs");
+        Option runtimeOpt = new Option(null, "runtime", true,
+                "Also perform the lookups over TCP on the loopback interface, with arg lookups in flight");
+        Option replicationOpt = new Option(null, "replication", true,
+                "Also simulate a key-value store, replicating every value on arg distinct peers");
+        Option valueSizeOpt = new Option(null, "value-size", true,
+                "Size of the values of the key-value store, in bytes (default: 64)");
+        Option cacheOpt = new Option(null, "cache", true,
+                "Cache the routes on every node, with the eviction policy lru, lfu or tinylfu");
+        Option cacheSizeOpt = new Option(null, "cache-size", true, "Capacity of the route caches (default: 64)");
+        Option keysOpt = new Option(null, "keys", true,
+                "Distribution of the searched keys: uniform, zipf:S, zipf:S:KEYS, hotspot:KEYS:P or trace:FILE "
+                        + "(default: uniform)");
+        Option ratesOpt = new Option(null, "rates", true,
+                "Distribution of the number of lookups of the nodes: uniform or zipf:S (default: uniform)");
+        Option serviceTimeOpt = new Option(null, "service-time", true,
+                "Time to process a message in the latency simulation, in milliseconds (default: 0)");
+
+        options.addOption(nodesOpt).addOption(virtualOpt).addOption(bitsOpt).addOption(SIFOpt).addOption(DOTOpt)
+                .addOption(logOpt).addOption(helpOpt).addOption(itOpt).addOption(threadsOpt)
+                .addOption(hashOpt).addOption(compactOpt).addOption(convertOpt).addOption(churnOpt)
+                .addOption(joinRateOpt).addOption(leaveRateOpt).addOption(stabilizeOpt).addOption(successorsOpt)
+                .addOption(latencyOpt).addOption(lookupRateOpt).addOption(serviceTimeOpt).addOption(geometryOpt)
+                .addOption(proximityOpt).addOption(runtimeOpt).addOption(cacheOpt).addOption(cacheSizeOpt)
+                .addOption(keysOpt).addOption(ratesOpt).addOption(replicationOpt).addOption(valueSizeOpt)
+                .addOption(saveRingOpt).addOption(loadRingOpt).addOption(GraphMLOpt).addOption(edgesOpt)
+                .addOption(sweepOpt).addOption(metricsOpt).addOption(jmxOpt).addOption(seedOpt)
+                .addOption(precisionOpt).addOption(simpleGraphOpt);
+
+        return options;
     }
 }
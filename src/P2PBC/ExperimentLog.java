@@ -0,0 +1,79 @@
+package P2PBC;
+
+import org.json.JSONObject;
+
+import java.io.*;
+
+/**
+ * This class manages an append-only log of experiments in the JSON Lines
+ * format, i.e., one JSON object per line. Every experiment is streamed to the
+ * end of the file, so its cost does not depend on the size of the log.
+ */
+public class ExperimentLog implements Closeable {
+    private final Writer writer;
+
+    /**
+     * Opens the log stored at {@code file} in append mode, creating it (and
+     * its parent directories) if it does not exist.
+     *
+     * @param file the path of the log file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public ExperimentLog(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+
+        if (parent != null)
+            parent.mkdirs();
+
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "utf-8"));
+    }
+
+    /**
+     * Appends an experiment to the log, as a single line.
+     *
+     * @param experiment the experiment to be appended.
+     * @throws IOException If an I/O error occurs.
+     */
+    public synchronized void append(JSONObject experiment) throws IOException {
+        experiment.write(writer);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /**
+     * Closes the log.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Converts a log in the JSON Lines format to a single JSON object of the
+     * form {@code {"experiments": [...]}}. The log is streamed line by line,
+     * so only one experiment at a time is kept in memory.
+     *
+     * @param reader the reader of the JSON Lines log.
+     * @param writer the writer of the JSON object.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void convert(Reader reader, Writer writer) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String separator = "\n";
+        String line;
+
+        writer.write("{\"experiments\": [");
+
+        while ((line = lines.readLine()) != null) {
+            if (line.trim().isEmpty())
+                continue;
+
+            writer.append(separator).append(line);
+            separator = ",\n";
+        }
+
+        writer.write("\n]}\n");
+    }
+}
@@ -0,0 +1,168 @@
+package P2PBC.Net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * This class serves a set of {@link NodeServer}s from a single thread, with
+ * a non-blocking NIO {@link Selector}, so that thousands of nodes need only
+ * as many threads as the available cores. Every connection reads its
+ * requests into a buffer, answers all the complete ones at once and writes
+ * back the responses in a single call. A connection whose peer does not read
+ * its responses stops being read, until they are written.
+ */
+public class EventLoop implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 14;
+
+    private final Selector selector;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    /**
+     * Creates a new {@link EventLoop}, which does not serve any node until
+     * it is started.
+     *
+     * @param name the name of the thread of the loop.
+     * @throws IOException If the selector cannot be opened.
+     */
+    public EventLoop(String name) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this::loop, name);
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Adds a node to the ones served by the loop. Nodes must be added before
+     * the loop is started.
+     *
+     * @param server the {@link NodeServer} to be served.
+     * @throws IOException If the channel of the node cannot be registered.
+     */
+    public void add(NodeServer server) throws IOException {
+        server.getChannel().configureBlocking(false);
+        server.getChannel().register(selector, SelectionKey.OP_ACCEPT, server);
+    }
+
+    /**
+     * Starts serving the nodes, in the thread of the loop.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Checks that the loop is still serving its nodes.
+     *
+     * @throws IOException If the loop has stopped because of an I/O error,
+     * which is its cause.
+     */
+    public void check() throws IOException {
+        if (failure != null)
+            throw new IOException("Event loop " + thread.getName() + " failed: " + failure.getMessage(), failure);
+    }
+
+    /**
+     * Stops the loop, waiting for its thread, and closes every channel of its
+     * nodes and connections.
+     *
+     * @throws IOException If a channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (SelectionKey key : selector.keys())
+            key.channel().close();
+
+        selector.close();
+    }
+
+    // Serves the ready channels until the loop is closed. An I/O error stops
+    // the loop, and is kept to be reported by check()
+    private void loop() {
+        try {
+            while (running) {
+                selector.select();
+
+                for (SelectionKey key : selector.selectedKeys())
+                    if (key.isValid() && key.isAcceptable())
+                        accept(key);
+                    else if (key.isValid())
+                        serve(key);
+
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    // Accepts a new connection to a node
+    private void accept(SelectionKey key) throws IOException {
+        SocketChannel channel = ((ServerSocketChannel) key.channel()).accept();
+
+        if (channel == null)
+            return;
+
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection((NodeServer) key.attachment()));
+    }
+
+    // Reads the available requests of a connection and writes back their
+    // responses. A connection closed or reset by its peer is closed
+    private void serve(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer in = connection.in, out = connection.out;
+
+        try {
+            if (key.isReadable() && channel.read(in) < 0) {
+                channel.close();
+                return;
+            }
+
+            in.flip();
+
+            while (in.remaining() >= Protocol.REQUEST_SIZE && out.remaining() >= Protocol.RESPONSE_SIZE)
+                connection.server.handle(in, out);
+
+            in.compact();
+            out.flip();
+            channel.write(out);
+            out.compact();
+            key.interestOps((in.hasRemaining()? SelectionKey.OP_READ : 0)
+                    | (out.position() > 0? SelectionKey.OP_WRITE : 0));
+        } catch (IOException e) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // A connection to a node, with its pending requests and responses
+    private static class Connection {
+        private final NodeServer server;
+        private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private Connection(NodeServer server) {
+            this.server = server;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package P2PBC.Net;
+
+import P2PBC.Chord.Identifier;
+import P2PBC.Chord.Network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * This class load-tests a {@link LoopbackCluster}, performing iterative
+ * lookups over TCP with a fixed number of lookups in flight: the client asks
+ * every node of the path for the next hop and then contacts it, and starts a
+ * new lookup as soon as one completes. Every lookup has a random source and
+ * key, as in the {@link P2PBC.Simulation.LatencySimulator}, and is also
+ * routed on the simulated {@link Network}, so that any difference between
+ * the owner or the path length found over the network and the simulated one
+ * is counted.
+ *
+ * The client runs on a single thread, with a non-blocking NIO
+ * {@link Selector}, and shares one connection per node between all the
+ * lookups, pipelining their requests.
+ */
+public class LoadGenerator {
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+    private static final long POLL_INTERVAL = 100;
+
+    private final Network network;
+    private final LoopbackCluster cluster;
+    private final int lookups;
+    private final int concurrency;
+    private final HashMap<Long, Connection> connections = new HashMap<>();
+    private final long[] positions;
+    private final long[] starts;
+    private final long[] currentIds;
+    private final long[] expectedIds;
+    private final int[] expectedHops;
+    private final int[] hops;
+    private final long[] latencies;
+    private long[] pathLengths = new long[Identifier.getBitLength() + 2];
+    private Selector selector;
+    private SplittableRandom random;
+    private int pathLength;
+    private final IntConsumer counter = node -> pathLength++;
+    private int started = 0;
+    private int done = 0;
+    private long messages = 0;
+    private long mismatches = 0;
+    private long errors = 0;
+    private long duration = 0;
+
+    /**
+     * Creates a new {@link LoadGenerator} of the given cluster.
+     *
+     * @param network the {@link Network} served by the cluster.
+     * @param cluster the {@link LoopbackCluster} to be tested.
+     * @param lookups the total number of lookups.
+     * @param concurrency the number of lookups in flight at the same time.
+     * @throws IllegalArgumentException if the concurrency is not positive.
+     */
+    public LoadGenerator(Network network, LoopbackCluster cluster, int lookups, int concurrency) {
+        if (concurrency < 1)
+            throw new IllegalArgumentException("Concurrency must be positive.");
+
+        this.network = network;
+        this.cluster = cluster;
+        this.lookups = lookups;
+        this.concurrency = concurrency;
+        positions = new long[concurrency];
+        starts = new long[concurrency];
+        currentIds = new long[concurrency];
+        expectedIds = new long[concurrency];
+        expectedHops = new int[concurrency];
+        hops = new int[concurrency];
+        latencies = new long[lookups];
+    }
+
+    /**
+     * Performs every lookup, returning when they are all completed. The
+     * connections are closed at the end.
+     *
+     * @param seed the seed of the random generator.
+     * @throws IOException If a connection fails, if an {@link EventLoop} of
+     * the cluster stops, or if no response arrives for 30 seconds.
+     */
+    public void run(long seed) throws IOException {
+        random = new SplittableRandom(seed);
+        selector = Selector.open();
+
+        try {
+            long start = System.nanoTime(), progress = start;
+
+            for (int slot = 0; slot < concurrency && started < lookups; slot++)
+                startLookup(slot);
+
+            while (done < lookups) {
+                // Polls the cluster, so that a failed loop stops the test at once
+                cluster.check();
+
+                if (selector.select(POLL_INTERVAL) == 0) {
+                    if (System.nanoTime() - progress > TIMEOUT)
+                        throw new IOException("Lookups timed out.");
+
+                    continue;
+                }
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Connection connection = (Connection) key.attachment();
+
+                    if (key.isWritable())
+                        flush(connection);
+
+                    if (key.isReadable())
+                        receive(connection);
+                }
+
+                selector.selectedKeys().clear();
+                progress = System.nanoTime();
+            }
+
+            duration = System.nanoTime() - start;
+        } finally {
+            for (Connection connection : connections.values())
+                connection.channel.close();
+
+            connections.clear();
+            selector.close();
+        }
+    }
+
+    /**
+     * Stores the results of the test in {@code results}: the number of
+     * lookups, the total duration in seconds and the throughput in lookups
+     * per second, the mean, maximum and percentile (p50, p99, p999) latencies
+     * in milliseconds, the histogram of the path lengths, the number of
+     * messages sent by the client, the number of lookups whose owner or path
+     * length differs from the simulated one ({@code mismatches}) and the
+     * number of requests rejected by the nodes ({@code errors}).
+     *
+     * @param results the map where the results will be stored.
+     */
+    public void writeTo(Map<String, Object> results) {
+        long[] sorted = Arrays.copyOf(latencies, done);
+        TreeMap<Integer, Long> pathLengthHist = new TreeMap<>();
+        double sum = 0;
+        Arrays.sort(sorted);
+
+        for (long latency : sorted)
+            sum += latency;
+
+        for (int i = 0; i < pathLengths.length; i++)
+            if (pathLengths[i] > 0)
+                pathLengthHist.put(i, pathLengths[i]);
+
+        results.put("lookups", done);
+        results.put("concurrency", concurrency);
+        results.put("duration", duration/1e9);
+        results.put("throughput", duration == 0? 0. : done/(duration/1e9));
+        results.put("meanLatency", done == 0? 0. : sum/done/1e6);
+        results.put("p50", percentile(sorted, 0.5));
+        results.put("p99", percentile(sorted, 0.99));
+        results.put("p999", percentile(sorted, 0.999));
+        results.put("maxLatency", done == 0? 0. : sorted[done - 1]/1e6);
+        results.put("pathLengths", pathLengthHist);
+        results.put("messages", messages);
+        results.put("mismatches", mismatches);
+        results.put("errors", errors);
+    }
+
+    // Starts a new lookup in the slot, routing it on the simulated network
+    // first and then sending its first request to the source itself
+    private void startLookup(int slot) throws IOException {
+        int source = random.nextInt(network.size());
+        long key = random.nextLong();
+        pathLength = -1;
+        int end = network.route(source, key, counter);
+
+        started++;
+        positions[slot] = Identifier.position(key);
+        expectedIds[slot] = network.getIdentifier(end).longValue();
+        expectedHops[slot] = pathLength;
+        currentIds[slot] = network.getIdentifier(source).longValue();
+        hops[slot] = 0;
+        starts[slot] = System.nanoTime();
+        send(slot, cluster.getHost(source), cluster.getPort(source));
+    }
+
+    // Sends the request of the lookup in the slot to the given node
+    private void send(int slot, int host, int port) throws IOException {
+        Connection connection = connect(host, port);
+        Protocol.putRequest(connection.out, slot, Protocol.FIND_SUCCESSOR, positions[slot]);
+        messages++;
+        flush(connection);
+    }
+
+    // Handles the response to the lookup in the slot, sending its next
+    // request or completing it
+    private void respond(int slot, byte status, long id, int host, int port) throws IOException {
+        if (status == Protocol.NEXT) {
+            hops[slot]++;
+            currentIds[slot] = id;
+            send(slot, host, port);
+            return;
+        }
+
+        // The owner is a further hop, unless it is the node just contacted
+        if (status == Protocol.FOUND && id != currentIds[slot])
+            hops[slot]++;
+
+        latencies[done++] = System.nanoTime() - starts[slot];
+
+        if (status != Protocol.FOUND)
+            errors++;
+        else if (id != expectedIds[slot] || hops[slot] != expectedHops[slot])
+            mismatches++;
+
+        if (hops[slot] >= pathLengths.length)
+            pathLengths = Arrays.copyOf(pathLengths, hops[slot] + 1);
+
+        pathLengths[hops[slot]]++;
+
+        if (started < lookups)
+            startLookup(slot);
+    }
+
+    // Reads the available responses of the connection
+    private void receive(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+
+        if (connection.channel.read(in) < 0)
+            throw new IOException("Connection closed by a node.");
+
+        in.flip();
+
+        while (in.remaining() >= Protocol.RESPONSE_SIZE) {
+            int tag = in.getInt();
+            byte status = in.get();
+            long id = in.getLong();
+            int host = in.getInt();
+            int port = in.getShort() & 0xFFFF;
+            respond(tag, status, id, host, port);
+        }
+
+        in.compact();
+    }
+
+    // Writes the pending requests of the connection, waiting for the channel
+    // to be writable if they do not fit in its buffer
+    private void flush(Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        out.flip();
+        connection.channel.write(out);
+        out.compact();
+        connection.key.interestOps(SelectionKey.OP_READ | (out.position() > 0? SelectionKey.OP_WRITE : 0));
+    }
+
+    // Returns the connection to the given node, opening it if needed
+    private Connection connect(int host, int port) throws IOException {
+        long address = Protocol.addressKey(host, port);
+        Connection connection = connections.get(address);
+
+        if (connection == null) {
+            byte[] bytes = {(byte) (host >>> 24), (byte) (host >>> 16), (byte) (host >>> 8), (byte) host};
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getByAddress(bytes), port));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.configureBlocking(false);
+            connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.put(address, connection);
+        }
+
+        return connection;
+    }
+
+    // Computes the given percentile of the sorted latencies, by nearest rank,
+    // in milliseconds
+    private static double percentile(long[] sorted, double p) {
+        return sorted.length == 0? 0. : sorted[Math.max(0, (int) Math.ceil(p*sorted.length) - 1)]/1e6;
+    }
+
+    // A connection to a node, shared by every lookup. Every lookup has at
+    // most one request in flight, so the buffers never overflow
+    private class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(concurrency*Protocol.RESPONSE_SIZE);
+        private final ByteBuffer out = ByteBuffer.allocate(concurrency*Protocol.REQUEST_SIZE);
+        private SelectionKey key;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
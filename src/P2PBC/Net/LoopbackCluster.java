@@ -0,0 +1,134 @@
+package P2PBC.Net;
+
+import P2PBC.Chord.Identifier;
+import P2PBC.Chord.Network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * This class runs every node of a {@link Network} as a {@link NodeServer}
+ * listening on its own port of the loopback interface, so that the routing
+ * code can be load-tested over real TCP connections in a single JVM. The
+ * nodes keep the {@link Identifier}s of the network, while their ports are
+ * chosen by the operating system. The nodes are split evenly between a fixed
+ * number of {@link EventLoop}s.
+ */
+public class LoopbackCluster implements Closeable {
+    private static final int BACKLOG = 1024;
+
+    private final EventLoop[] loops;
+    private final ServerSocketChannel[] channels;
+    private final int[] hosts;
+    private final int[] ports;
+
+    /**
+     * Starts serving every node of the network on the loopback interface.
+     * Valid only if {@link Identifier#isCompact()} holds.
+     *
+     * @param network the {@link Network} to be served.
+     * @param threads the number of {@link EventLoop}s, each one with its own
+     *                thread.
+     * @throws IOException If a port cannot be opened, e.g. because there are
+     * too many open files.
+     */
+    public LoopbackCluster(Network network, int threads) throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        int size = network.size();
+        loops = new EventLoop[threads];
+        channels = new ServerSocketChannel[size];
+        hosts = new int[size];
+        ports = new int[size];
+
+        if (!(loopback instanceof Inet4Address))
+            throw new IOException("The loopback interface has no IPv4 address.");
+
+        try {
+            for (int i = 0; i < size; i++) {
+                channels[i] = ServerSocketChannel.open();
+                channels[i].bind(new InetSocketAddress(loopback, 0), BACKLOG);
+                hosts[i] = toInt(loopback.getAddress());
+                ports[i] = ((InetSocketAddress) channels[i].getLocalAddress()).getPort();
+            }
+
+            for (int i = 0; i < threads; i++)
+                loops[i] = new EventLoop("chord-node-" + i);
+
+            for (int i = 0; i < size; i++)
+                loops[i % threads].add(new NodeServer(channels[i], network, i, hosts, ports));
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+
+        for (EventLoop loop : loops)
+            loop.start();
+    }
+
+    /**
+     * Returns the number of nodes of the cluster.
+     *
+     * @return the number of nodes.
+     */
+    public int size() {
+        return channels.length;
+    }
+
+    /**
+     * Returns the IPv4 address where the given node listens, as an
+     * {@code int}.
+     *
+     * @param node the index of the node.
+     * @return the host of the node.
+     */
+    public int getHost(int node) {
+        return hosts[node];
+    }
+
+    /**
+     * Returns the port where the given node listens.
+     *
+     * @param node the index of the node.
+     * @return the port of the node.
+     */
+    public int getPort(int node) {
+        return ports[node];
+    }
+
+    /**
+     * Checks that every {@link EventLoop} of the cluster is still serving
+     * its nodes.
+     *
+     * @throws IOException If a loop has stopped because of an I/O error.
+     */
+    public void check() throws IOException {
+        for (EventLoop loop : loops)
+            loop.check();
+    }
+
+    /**
+     * Stops every {@link EventLoop} and closes every port of the cluster.
+     *
+     * @throws IOException If a channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        for (EventLoop loop : loops)
+            if (loop != null)
+                loop.close();
+
+        // Channels not yet registered in a loop are closed here
+        for (ServerSocketChannel channel : channels)
+            if (channel != null)
+                channel.close();
+    }
+
+    // Converts the bytes of an IPv4 address to an int
+    static int toInt(byte[] address) {
+        return (address[0] & 0xFF) << 24 | (address[1] & 0xFF) << 16 | (address[2] & 0xFF) << 8 | address[3] & 0xFF;
+    }
+}
@@ -0,0 +1,123 @@
+package P2PBC.Net;
+
+import P2PBC.Chord.Identifier;
+import P2PBC.Chord.Network;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * This class is a Chord node served over TCP, answering the requests of the
+ * {@link Protocol}. The node keeps its own copy of its routing state, i.e.,
+ * the identifier of its predecessor and the identifiers and addresses of its
+ * distinct fingers, as a real node would, so serving a request reads nothing
+ * but a few primitive arrays. Valid only if {@link Identifier#isCompact()}
+ * holds.
+ */
+public class NodeServer {
+    private final ServerSocketChannel channel;
+    private final long id;
+    private final int host;
+    private final int port;
+    private final long predecessor;
+    private final long[] fingerIds;
+    private final int[] fingerHosts;
+    private final int[] fingerPorts;
+
+    /**
+     * Creates the server of the given node of the network, listening on
+     * {@code channel}.
+     *
+     * @param channel the {@link ServerSocketChannel} of the node, already
+     *                bound to its address.
+     * @param network the {@link Network} of the node.
+     * @param node the index of the node.
+     * @param hosts the IPv4 addresses where every node of the network
+     *              listens, as {@code int}s.
+     * @param ports the ports where every node of the network listens.
+     */
+    public NodeServer(ServerSocketChannel channel, Network network, int node, int[] hosts, int[] ports) {
+        int count = 0;
+        int[] fingers = new int[network.getFingerCount(node)];
+        this.channel = channel;
+        id = network.getIdentifier(node).longValue();
+        host = hosts[node];
+        port = ports[node];
+        predecessor = network.getIdentifier((node + network.size() - 1) % network.size()).longValue();
+
+        // Fingers are sorted by distance, so repeated ones are adjacent
+        for (int i = 0; i < fingers.length; i++) {
+            int finger = network.getFinger(node, i);
+
+            if (count == 0 || fingers[count - 1] != finger)
+                fingers[count++] = finger;
+        }
+
+        fingerIds = new long[count];
+        fingerHosts = new int[count];
+        fingerPorts = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            fingerIds[i] = network.getIdentifier(fingers[i]).longValue();
+            fingerHosts[i] = hosts[fingers[i]];
+            fingerPorts[i] = ports[fingers[i]];
+        }
+    }
+
+    /**
+     * Returns the channel where the node listens.
+     *
+     * @return the {@link ServerSocketChannel} of the node.
+     */
+    public ServerSocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Reads a request frame from {@code request} and appends the response
+     * frame to {@code response}, which must have enough room for it.
+     *
+     * @param request the buffer holding the request.
+     * @param response the buffer where the response is appended.
+     */
+    public void handle(ByteBuffer request, ByteBuffer response) {
+        int tag = request.getInt();
+        byte operation = request.get();
+        long position = request.getLong();
+
+        if (operation == Protocol.CLOSEST_PRECEDING_FINGER) {
+            putFinger(response, tag, Protocol.NEXT, closestPrecedingFinger(position));
+        } else if (operation != Protocol.FIND_SUCCESSOR) {
+            putFinger(response, tag, Protocol.ERROR, -1);
+        } else if (Identifier.isBetween(position, predecessor, id)) {
+            putFinger(response, tag, Protocol.FOUND, -1);
+        } else if (Identifier.isBetween(position, id, fingerIds[0])) {
+            putFinger(response, tag, Protocol.FOUND, 0);
+        } else {
+            int next = closestPrecedingFinger(position);
+
+            // A node without preceding fingers is the end of the path, as in
+            // a circular network
+            putFinger(response, tag, next < 0? Protocol.FOUND : Protocol.NEXT, next);
+        }
+    }
+
+    // Returns the index of the closest finger preceding the position, or -1
+    // if there is none
+    private int closestPrecedingFinger(long position) {
+        for (int i = fingerIds.length - 1; i >= 0; i--)
+            if (Identifier.isBetween(fingerIds[i], id, position))
+                return i;
+
+        return -1;
+    }
+
+    // Appends the response describing the i-th finger, or the node itself
+    // if i is -1
+    private void putFinger(ByteBuffer response, int tag, byte status, int i) {
+        if (i < 0)
+            Protocol.putResponse(response, tag, status, id, host, port);
+        else
+            Protocol.putResponse(response, tag, status, fingerIds[i], fingerHosts[i], fingerPorts[i]);
+    }
+}
@@ -0,0 +1,73 @@
+package P2PBC.Net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary protocol spoken by the {@link NodeServer}s. Every message is a
+ * fixed-size frame in network byte order, so frames need neither a length
+ * prefix nor any parsing beyond a few absolute reads, and many of them can be
+ * pipelined on the same connection. Every response carries the tag of its
+ * request, so the client can match them even if they arrive out of order.
+ *
+ * A request is {@code [int tag][byte operation][long position]}, where
+ * {@code position} is the raw position of the searched key in the ring.
+ * A response is {@code [int tag][byte status][long id][int host][short port]},
+ * describing a node by its identifier and its IPv4 socket address.
+ */
+final class Protocol {
+    /**
+     * The size of a request frame, in bytes.
+     */
+    static final int REQUEST_SIZE = 13;
+
+    /**
+     * The size of a response frame, in bytes.
+     */
+    static final int RESPONSE_SIZE = 19;
+
+    /**
+     * The {@code find_successor} operation: the node replies with the owner
+     * of the position, if it is itself or its successor, or with the next
+     * hop towards it.
+     */
+    static final byte FIND_SUCCESSOR = 1;
+
+    /**
+     * The {@code closest_preceding_finger} operation: the node replies with
+     * its closest finger preceding the position, or with itself.
+     */
+    static final byte CLOSEST_PRECEDING_FINGER = 2;
+
+    /**
+     * The node in the response owns the position.
+     */
+    static final byte FOUND = 0;
+
+    /**
+     * The node in the response is the next hop towards the position.
+     */
+    static final byte NEXT = 1;
+
+    /**
+     * The request was not understood. The node in the response is the one
+     * that received it.
+     */
+    static final byte ERROR = 2;
+
+    private Protocol() {}
+
+    // Appends a request frame to the buffer
+    static void putRequest(ByteBuffer buffer, int tag, byte operation, long position) {
+        buffer.putInt(tag).put(operation).putLong(position);
+    }
+
+    // Appends a response frame to the buffer
+    static void putResponse(ByteBuffer buffer, int tag, byte status, long id, int host, int port) {
+        buffer.putInt(tag).put(status).putLong(id).putInt(host).putShort((short) port);
+    }
+
+    // Returns the key of a socket address, used to share connections
+    static long addressKey(int host, int port) {
+        return (host & 0xFFFFFFFFL) << 16 | port;
+    }
+}
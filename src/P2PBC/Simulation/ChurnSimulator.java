@@ -0,0 +1,288 @@
+package P2PBC.Simulation;
+
+import P2PBC.Chord.Identifier;
+import P2PBC.Chord.Node;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.function.Consumer;
+
+/**
+ * This class simulates the Chord lookup protocol under churn. Starting from a
+ * given network, nodes join and leave (abruptly) the network as Poisson
+ * processes with the given rates, while every alive node periodically runs
+ * the stabilization protocol ({@link Node#stabilize()},
+ * {@link Node#fixFingers()} and {@link Node#checkPredecessor()}). Lookups are
+ * issued as a Poisson process too, from random alive nodes.
+ *
+ * A lookup succeeds if it ends on the actual owner of the key, i.e., on the
+ * first alive node following the key. The path length of each successful
+ * lookup is compared with the one it would have had on a stable ring with the
+ * same nodes, to measure the hop inflation due to stale fingers.
+ */
+public class ChurnSimulator {
+    private final Scheduler scheduler = new Scheduler();
+    private final TreeMap<Identifier, Node> alive = new TreeMap<>();
+    private final ArrayList<Node> aliveList = new ArrayList<>();
+    private final HashMap<Node, Integer> positions = new HashMap<>();
+    private final ArrayList<Node> allNodes = new ArrayList<>();
+    private final double joinRate;
+    private final double leaveRate;
+    private final double stabilizePeriod;
+    private final double lookupRate;
+    private SplittableRandom random;
+    private int pathLength;
+    private final Consumer<Node> counter = node -> pathLength++;
+    private long joins = 0;
+    private long leaves = 0;
+    private long lookups = 0;
+    private long successes = 0;
+    private long hops = 0;
+    private long idealHops = 0;
+    private long[] pathLengths = new long[Identifier.getBitLength() + 2];
+    private double nodeTime = 0;
+    private double lastChange = 0;
+
+    /**
+     * Creates a new {@link ChurnSimulator} starting from the given network.
+     *
+     * @param network the initial {@link Node}s of the network, with their
+     *                finger tables and successor lists set.
+     * @param joinRate the average number of joins per time unit.
+     * @param leaveRate the average number of leaves per time unit.
+     * @param stabilizePeriod the average time between two stabilizations of
+     *                        the same node.
+     * @param lookupRate the average number of lookups per time unit.
+     */
+    public ChurnSimulator(Collection<Node> network, double joinRate, double leaveRate,
+                          double stabilizePeriod, double lookupRate) {
+        this.joinRate = joinRate;
+        this.leaveRate = leaveRate;
+        this.stabilizePeriod = stabilizePeriod;
+        this.lookupRate = lookupRate;
+
+        for (Node node : network)
+            add(node);
+    }
+
+    /**
+     * Runs the simulation for {@code duration} time units.
+     *
+     * @param duration the duration of the simulation.
+     * @param seed the seed of the random generator.
+     */
+    public void run(double duration, long seed) {
+        random = new SplittableRandom(seed);
+
+        for (Node node : aliveList)
+            scheduleMaintenance(node, stabilizePeriod*random.nextDouble());
+
+        schedulePoisson(joinRate, this::join);
+        schedulePoisson(leaveRate, this::leave);
+        schedulePoisson(lookupRate, this::lookup);
+        scheduler.run(duration);
+        nodeTime += alive.size()*(duration - lastChange);
+    }
+
+    /**
+     * Returns every {@link Node} that has been part of the network during
+     * the simulation, including the ones that have left.
+     *
+     * @return the {@link Node}s of the simulation.
+     */
+    public List<Node> getNodes() {
+        return Collections.unmodifiableList(allNodes);
+    }
+
+    /**
+     * Stores the results of the simulation in {@code results}.
+     *
+     * @param results the map where the results will be stored.
+     */
+    public void writeTo(Map<String, Object> results) {
+        long messages = 0;
+        TreeMap<Integer, Long> pathLengthHist = new TreeMap<>();
+
+        for (Node node : allNodes)
+            messages += node.getMessageCount();
+
+        for (int i = 0; i < pathLengths.length; i++)
+            if (pathLengths[i] > 0)
+                pathLengthHist.put(i, pathLengths[i]);
+
+        results.put("joins", joins);
+        results.put("leaves", leaves);
+        results.put("finalNodes", alive.size());
+        results.put("lookups", lookups);
+        results.put("successRate", lookups == 0? 0. : (double) successes/lookups);
+        results.put("meanPathLength", successes == 0? 0. : (double) hops/successes);
+        results.put("meanIdealPathLength", successes == 0? 0. : (double) idealHops/successes);
+        results.put("hopInflation", idealHops == 0? 0. : (double) hops/idealHops);
+        results.put("maintenanceMessages", messages);
+        results.put("maintenanceMessageRate", nodeTime == 0? 0. : messages/nodeTime);
+        results.put("pathLengths", pathLengthHist);
+    }
+
+    // Schedules an action as a Poisson process with the given rate
+    private void schedulePoisson(double rate, Runnable action) {
+        if (rate <= 0)
+            return;
+
+        scheduler.schedule(-Math.log(1 - random.nextDouble())/rate, () -> {
+            action.run();
+            schedulePoisson(rate, action);
+        });
+    }
+
+    // Schedules the periodic stabilization of the node, with some jitter
+    private void scheduleMaintenance(Node node, double delay) {
+        scheduler.schedule(delay, () -> {
+            if (!node.isAlive())
+                return;
+
+            node.stabilize();
+            node.fixFingers();
+            node.checkPredecessor();
+            scheduleMaintenance(node, stabilizePeriod*(0.5 + random.nextDouble()));
+        });
+    }
+
+    // A new node joins the network, through a random bootstrap node
+    private void join() {
+        byte[] bytes = new byte[4];
+        Node node = null;
+
+        while (node == null || alive.containsKey(node.getId())) {
+            try {
+                ByteBuffer.wrap(bytes).putInt(random.nextInt());
+                node = new Node(InetAddress.getByAddress(bytes), random.nextInt(65536));
+            } catch (UnknownHostException ignore) {}
+        }
+
+        if (aliveList.isEmpty())
+            return;
+
+        node.join(randomNode());
+        add(node);
+        joins++;
+        scheduleMaintenance(node, stabilizePeriod*random.nextDouble());
+    }
+
+    // A random node leaves the network, unless it is the last one
+    private void leave() {
+        if (aliveList.size() <= 1)
+            return;
+
+        Node node = randomNode();
+        node.fail();
+        remove(node);
+        leaves++;
+    }
+
+    // A random node looks up a random key
+    private void lookup() {
+        Node source = randomNode();
+        Identifier key = Identifier.ofKey(random.nextLong());
+        Entry<Identifier, Node> owner = alive.ceilingEntry(key);
+        pathLength = -1;
+        Node end = source.getPathTo(key, counter);
+        lookups++;
+
+        if (end != (owner == null? alive.firstEntry() : owner).getValue())
+            return;
+
+        if (pathLength >= pathLengths.length)
+            pathLengths = Arrays.copyOf(pathLengths, pathLength + 1);
+
+        successes++;
+        hops += pathLength;
+        idealHops += idealPathLength(source, key);
+        pathLengths[pathLength]++;
+    }
+
+    // Computes the path length of the lookup on a stable ring with the same
+    // alive nodes, where every finger is exact
+    private int idealPathLength(Node source, Identifier key) {
+        Node node = source;
+
+        for (int length = 0; ; length++) {
+            if (key.isBetween(lower(node.getId()).getId(), node.getId()))
+                return length;
+
+            if (key.isBetween(node.getId(), higher(node.getId()).getId()))
+                return length + 1;
+
+            Node next = node;
+
+            for (int i = Identifier.getBitLength() - 1; i >= 0 && next == node; i--) {
+                Node finger = ceiling(node.getId().add(BigInteger.ONE.shiftLeft(i)));
+
+                if (finger.getId().isBetween(node.getId(), key))
+                    next = finger;
+            }
+
+            if (next == node)
+                return length;
+
+            node = next;
+        }
+    }
+
+    // Returns the alive node preceding the identifier
+    private Node lower(Identifier id) {
+        Entry<Identifier, Node> entry = alive.lowerEntry(id);
+
+        return (entry == null? alive.lastEntry() : entry).getValue();
+    }
+
+    // Returns the alive node following the identifier
+    private Node higher(Identifier id) {
+        Entry<Identifier, Node> entry = alive.higherEntry(id);
+
+        return (entry == null? alive.firstEntry() : entry).getValue();
+    }
+
+    // Returns the first alive node following or equal to the identifier
+    private Node ceiling(Identifier id) {
+        Entry<Identifier, Node> entry = alive.ceilingEntry(id);
+
+        return (entry == null? alive.firstEntry() : entry).getValue();
+    }
+
+    // Picks an alive node uniformly at random
+    private Node randomNode() {
+        return aliveList.get(random.nextInt(aliveList.size()));
+    }
+
+    // Adds the node to the alive ones
+    private void add(Node node) {
+        updateNodeTime();
+        alive.put(node.getId(), node);
+        positions.put(node, aliveList.size());
+        aliveList.add(node);
+        allNodes.add(node);
+    }
+
+    // Removes the node from the alive ones
+    private void remove(Node node) {
+        updateNodeTime();
+        alive.remove(node.getId());
+        int position = positions.remove(node);
+        Node last = aliveList.remove(aliveList.size() - 1);
+
+        if (last != node) {
+            aliveList.set(position, last);
+            positions.put(last, position);
+        }
+    }
+
+    // Accumulates the number of alive nodes over time
+    private void updateNodeTime() {
+        nodeTime += alive.size()*(scheduler.now() - lastChange);
+        lastChange = scheduler.now();
+    }
+}
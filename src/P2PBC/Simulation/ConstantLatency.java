@@ -0,0 +1,26 @@
+package P2PBC.Simulation;
+
+/**
+ * This {@link LatencyModel} gives the same latency to every link.
+ */
+public class ConstantLatency implements LatencyModel {
+    private final double latency;
+
+    /**
+     * Creates a new {@link ConstantLatency} model.
+     *
+     * @param latency the latency of every link, in milliseconds.
+     * @throws IllegalArgumentException if {@code latency} is negative.
+     */
+    public ConstantLatency(double latency) {
+        if (!(latency >= 0))
+            throw new IllegalArgumentException("Latency must be non-negative.");
+
+        this.latency = latency;
+    }
+
+    @Override
+    public double latency(int from, int to) {
+        return from == to? 0 : latency;
+    }
+}
@@ -0,0 +1,59 @@
+package P2PBC.Simulation;
+
+import P2PBC.Chord.HashFunction;
+import P2PBC.Chord.Network;
+
+import java.net.InetSocketAddress;
+
+/**
+ * This {@link LatencyModel} places every node in a unit square, at the point
+ * given by hashing its address, and makes the latency of a link proportional
+ * to the Euclidean distance of its endpoints. It is an implicit latency
+ * matrix satisfying the triangle inequality, which needs only two
+ * coordinates per node.
+ */
+public class CoordinateLatency implements LatencyModel {
+    private final double[] x;
+    private final double[] y;
+    private final double scale;
+
+    /**
+     * Creates a new {@link CoordinateLatency} model for the given network.
+     *
+     * @param network the {@link Network} whose nodes are placed.
+     * @param diameter the latency between two opposite corners of the
+     *                 square, in milliseconds.
+     * @throws IllegalArgumentException if {@code diameter} is negative.
+     */
+    public CoordinateLatency(Network network, double diameter) {
+        if (!(diameter >= 0))
+            throw new IllegalArgumentException("Latency must be non-negative.");
+
+        x = new double[network.size()];
+        y = new double[network.size()];
+        scale = diameter/Math.sqrt(2);
+
+        for (int i = 0; i < x.length; i++) {
+            long hash = HashFunction.MIX64.hash(key(network.getAddress(i)));
+            x[i] = (hash >>> 32)*0x1p-32;
+            y[i] = (hash & 0xFFFFFFFFL)*0x1p-32;
+        }
+    }
+
+    @Override
+    public double latency(int from, int to) {
+        double dx = x[from] - x[to], dy = y[from] - y[to];
+
+        return scale*Math.sqrt(dx*dx + dy*dy);
+    }
+
+    // Packs the address and the port in a single key
+    private static long key(InetSocketAddress address) {
+        long key = 0;
+
+        for (byte b : address.getAddress().getAddress())
+            key = (key << 8) | (b & 0xFF);
+
+        return key << 32 | address.getPort();
+    }
+}
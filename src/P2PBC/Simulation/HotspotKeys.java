@@ -0,0 +1,34 @@
+package P2PBC.Simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * This {@link KeyDistribution} searches one of a small set of hot keys,
+ * chosen uniformly, with a given probability, and a uniformly random key
+ * otherwise. The hot keys are {@code 1, ..., keys}.
+ */
+public class HotspotKeys implements KeyDistribution {
+    private final int keys;
+    private final double probability;
+
+    /**
+     * Creates a new {@link HotspotKeys} distribution.
+     *
+     * @param keys the number of hot keys.
+     * @param probability the probability of searching a hot key.
+     * @throws IllegalArgumentException if the number of keys is not positive
+     * or the probability is not in [0, 1].
+     */
+    public HotspotKeys(int keys, double probability) {
+        if (!(keys > 0 && probability >= 0 && probability <= 1))
+            throw new IllegalArgumentException("Hotspots need keys > 0 and a probability in [0, 1].");
+
+        this.keys = keys;
+        this.probability = probability;
+    }
+
+    @Override
+    public long nextKey(long lookup, SplittableRandom random) {
+        return random.nextDouble() < probability? 1 + random.nextInt(keys) : random.nextLong();
+    }
+}
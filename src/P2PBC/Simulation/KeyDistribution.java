@@ -0,0 +1,71 @@
+package P2PBC.Simulation;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * This interface models the distribution of the keys searched by the
+ * lookups of a {@link Workload}. Keys are {@code long}s, mapped to the ring
+ * through {@link P2PBC.Chord.Identifier#ofKey(long)}, so the same key is
+ * always owned by the same node. Implementations must be thread-safe, since
+ * they are shared by the workers of a {@link Simulator}.
+ */
+public interface KeyDistribution {
+    /**
+     * Returns the key searched by the given lookup.
+     *
+     * @param lookup the global index of the lookup, from {@code 0} to the
+     *               total number of lookups of the workload.
+     * @param random the random generator of the node performing the
+     *               lookup.
+     * @return the key to be searched.
+     */
+    long nextKey(long lookup, SplittableRandom random);
+
+    /**
+     * Parses a key distribution. The {@code spec} has one of the following
+     * forms:
+     *
+     *  - {@code uniform}:              every key is drawn uniformly at random;
+     *  - {@code zipf:[s]}:             the keys are drawn among
+     *                                  {@link ZipfKeys#DEFAULT_KEYS} keys with
+     *                                  a Zipf distribution of exponent [s];
+     *  - {@code zipf:[s]:[keys]}:      the same, among [keys] keys;
+     *  - {@code hotspot:[keys]:[p]}:   a lookup searches one of [keys] hot
+     *                                  keys with probability [p], and a
+     *                                  uniformly random key otherwise;
+     *  - {@code trace:[path]}:         the keys are read from a trace file,
+     *                                  see {@link TraceKeys}.
+     *
+     * @param spec the specification of the distribution.
+     * @return the corresponding {@link KeyDistribution}.
+     * @throws IllegalArgumentException if {@code spec} is not a valid
+     * specification.
+     * @throws IOException if the trace file cannot be read.
+     */
+    static KeyDistribution parse(String spec) throws IOException {
+        String[] parts = spec.trim().split(":", 2);
+        String name = parts[0].toLowerCase();
+        String[] args = parts.length == 1? new String[0] : parts[1].split(":");
+
+        if (name.equals("trace") && parts.length == 2)
+            return new TraceKeys(Paths.get(parts[1]));
+
+        try {
+            if (name.equals("uniform") && args.length == 0)
+                return (lookup, random) -> random.nextLong();
+
+            if (name.equals("zipf") && args.length == 1)
+                return new ZipfKeys(Double.parseDouble(args[0]), ZipfKeys.DEFAULT_KEYS);
+
+            if (name.equals("zipf") && args.length == 2)
+                return new ZipfKeys(Double.parseDouble(args[0]), Integer.parseInt(args[1]));
+
+            if (name.equals("hotspot") && args.length == 2)
+                return new HotspotKeys(Integer.parseInt(args[0]), Double.parseDouble(args[1]));
+        } catch (NumberFormatException ignore) {}
+
+        throw new IllegalArgumentException("Invalid key distribution: " + spec);
+    }
+}
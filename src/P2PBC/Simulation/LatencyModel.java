@@ -0,0 +1,55 @@
+package P2PBC.Simulation;
+
+import P2PBC.Chord.Network;
+
+/**
+ * This interface models the one-way latency of the links between the nodes
+ * of a {@link Network}, identified by their index. Latencies are expressed in
+ * milliseconds and must not change during a simulation.
+ */
+public interface LatencyModel {
+    /**
+     * Returns the latency of a message sent from a node to another one.
+     *
+     * @param from the index of the sender.
+     * @param to the index of the receiver.
+     * @return the latency of the link, in milliseconds.
+     */
+    double latency(int from, int to);
+
+    /**
+     * Parses a latency model for the given network. The {@code spec} has one
+     * of the following forms:
+     *
+     *  - {@code constant:[ms]}:        every link has the same latency;
+     *  - {@code uniform:[min]:[max]}:  every link has a fixed latency, drawn
+     *                                  uniformly in [min, max];
+     *  - {@code coordinates:[ms]}:     the nodes are placed in a square by
+     *                                  hashing their address, and the latency
+     *                                  is proportional to their distance, up
+     *                                  to [ms] between opposite corners.
+     *
+     * @param spec the specification of the model.
+     * @param network the {@link Network} whose links are modelled.
+     * @param seed the seed used by randomized models.
+     * @return the corresponding {@link LatencyModel}.
+     * @throws IllegalArgumentException if {@code spec} is not a valid
+     * specification.
+     */
+    static LatencyModel parse(String spec, Network network, long seed) {
+        String[] parts = spec.trim().toLowerCase().split(":");
+
+        try {
+            if (parts[0].equals("constant") && parts.length == 2)
+                return new ConstantLatency(Double.parseDouble(parts[1]));
+
+            if (parts[0].equals("uniform") && parts.length == 3)
+                return new UniformLatency(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), seed);
+
+            if (parts[0].equals("coordinates") && parts.length == 2)
+                return new CoordinateLatency(network, Double.parseDouble(parts[1]));
+        } catch (NumberFormatException ignore) {}
+
+        throw new IllegalArgumentException("Invalid latency model: " + spec);
+    }
+}
@@ -0,0 +1,206 @@
+package P2PBC.Simulation;
+
+import P2PBC.Chord.Network;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * This class simulates the Chord lookup protocol on a given {@link Network}
+ * in time, measuring the end-to-end latency of the lookups. Every message is
+ * an event of a {@link Scheduler}: it reaches its receiver after the latency
+ * of the link, given by a {@link LatencyModel}, and then waits in the FIFO
+ * queue of the receiver, which processes one message at a time in a fixed
+ * service time. Lookups start as a Poisson process from random nodes, so
+ * many of them are in flight at the same time and compete for the nodes.
+ *
+ * Lookups can be routed in two ways:
+ *
+ *  - iteratively: the source asks every node of the path for the next hop
+ *    and waits its reply before contacting the following one;
+ *  - recursively: every node of the path forwards the lookup to the next
+ *    hop, and the last one replies directly to the source.
+ */
+public class LatencySimulator {
+    private final Scheduler scheduler = new Scheduler();
+    private final Network network;
+    private final LatencyModel model;
+    private final int lookups;
+    private final double lookupRate;
+    private final double serviceTime;
+    private final boolean recursive;
+    private final double[] busyUntil;
+    private final double[] latencies;
+    private SplittableRandom random;
+    private int[] path = new int[64];
+    private int pathLength;
+    private final IntConsumer appender = node -> {
+        if (pathLength == path.length)
+            path = Arrays.copyOf(path, 2*pathLength);
+
+        path[pathLength++] = node;
+    };
+    private int started = 0;
+    private int done = 0;
+    private int inFlight = 0;
+    private int maxInFlight = 0;
+
+    /**
+     * Creates a new {@link LatencySimulator} on the given network.
+     *
+     * @param network the {@link Network} to be simulated.
+     * @param model the {@link LatencyModel} of the links.
+     * @param lookups the total number of lookups.
+     * @param lookupRate the average number of lookups started per second.
+     * @param serviceTime the time needed by a node to process a message, in
+     *                    milliseconds.
+     * @param recursive if {@code true} the lookups are routed recursively,
+     *                  otherwise iteratively.
+     * @throws IllegalArgumentException if the rate is not positive or the
+     * service time is negative.
+     */
+    public LatencySimulator(Network network, LatencyModel model, int lookups, double lookupRate,
+                            double serviceTime, boolean recursive) {
+        if (!(lookupRate > 0 && serviceTime >= 0))
+            throw new IllegalArgumentException("Lookup rate must be positive and service time non-negative.");
+
+        this.network = network;
+        this.model = model;
+        this.lookups = lookups;
+        this.lookupRate = lookupRate;
+        this.serviceTime = serviceTime;
+        this.recursive = recursive;
+        busyUntil = new double[network.size()];
+        latencies = new double[lookups];
+    }
+
+    /**
+     * Runs the simulation until every lookup is completed. Given the same
+     * network and {@code seed}, the lookups have the same sources, keys and
+     * start times in both routing modes.
+     *
+     * @param seed the seed of the random generator.
+     */
+    public void run(long seed) {
+        random = new SplittableRandom(seed);
+        scheduleLookup();
+        scheduler.run(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Stores the results of the simulation in {@code results}: the number of
+     * lookups, the mean, maximum and percentile (p50, p99, p999) latencies in
+     * milliseconds, and the maximum number of lookups in flight at the same
+     * time.
+     *
+     * @param results the map where the results will be stored.
+     */
+    public void writeTo(Map<String, Object> results) {
+        double[] sorted = Arrays.copyOf(latencies, done);
+        double sum = 0;
+        Arrays.sort(sorted);
+
+        for (double latency : sorted)
+            sum += latency;
+
+        results.put("lookups", done);
+        results.put("meanLatency", done == 0? 0. : sum/done);
+        results.put("p50", percentile(sorted, 0.5));
+        results.put("p99", percentile(sorted, 0.99));
+        results.put("p999", percentile(sorted, 0.999));
+        results.put("maxLatency", done == 0? 0. : sorted[done - 1]);
+        results.put("maxInFlight", maxInFlight);
+    }
+
+    // Schedules the start of the next lookup, as a Poisson process
+    private void scheduleLookup() {
+        if (started == lookups)
+            return;
+
+        started++;
+        scheduler.schedule(-Math.log(1 - random.nextDouble())*1000/lookupRate, () -> {
+            startLookup();
+            scheduleLookup();
+        });
+    }
+
+    // Starts a lookup of a random key from a random node, which first
+    // processes it locally
+    private void startLookup() {
+        int source = random.nextInt(network.size());
+        pathLength = 0;
+        network.route(source, random.nextLong(), appender);
+        Lookup lookup = new Lookup(source, Arrays.copyOf(path, pathLength), scheduler.now());
+        maxInFlight = Math.max(maxInFlight, ++inFlight);
+
+        if (recursive)
+            send(source, source, () -> forward(lookup, 0));
+        else
+            send(source, source, () -> query(lookup, 1));
+    }
+
+    // Recursive routing: the hop-th node of the path forwards the lookup to
+    // the next one, or replies to the source if it is the last one
+    private void forward(Lookup lookup, int hop) {
+        int node = lookup.path[hop];
+
+        if (hop + 1 < lookup.path.length)
+            send(node, lookup.path[hop + 1], () -> forward(lookup, hop + 1));
+        else if (node == lookup.source)
+            complete(lookup);
+        else
+            send(node, lookup.source, () -> complete(lookup));
+    }
+
+    // Iterative routing: the source queries the hop-th node of the path and
+    // waits for its reply
+    private void query(Lookup lookup, int hop) {
+        if (hop == lookup.path.length) {
+            complete(lookup);
+            return;
+        }
+
+        int node = lookup.path[hop];
+        send(lookup.source, node, () -> send(node, lookup.source, () -> query(lookup, hop + 1)));
+    }
+
+    // Sends a message, which is processed by the receiver after the latency
+    // of the link and the time spent in its queue
+    private void send(int from, int to, Runnable onProcessed) {
+        scheduler.schedule(model.latency(from, to), () -> {
+            double start = Math.max(scheduler.now(), busyUntil[to]);
+            busyUntil[to] = start + serviceTime;
+
+            if (busyUntil[to] == scheduler.now())
+                onProcessed.run();
+            else
+                scheduler.schedule(busyUntil[to] - scheduler.now(), onProcessed);
+        });
+    }
+
+    // Records the latency of a completed lookup
+    private void complete(Lookup lookup) {
+        latencies[done++] = scheduler.now() - lookup.start;
+        inFlight--;
+    }
+
+    // Computes the given percentile of the sorted values, by nearest rank
+    private static double percentile(double[] sorted, double p) {
+        return sorted.length == 0? 0. : sorted[Math.max(0, (int) Math.ceil(p*sorted.length) - 1)];
+    }
+
+    // A lookup in flight
+    private static class Lookup {
+        private final int source;
+        private final int[] path;
+        private final double start;
+
+        private Lookup(int source, int[] path, double start) {
+            this.source = source;
+            this.path = path;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package P2PBC.Simulation;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects live metrics of the simulations, such as the number of
+ * lookups performed and the time spent in every {@link Phase}. Every metric
+ * is a {@link LongAdder}, so the workers update them without locks, while
+ * reporters, such as a {@link ProgressReporter} or a JMX client, read them
+ * from other threads. The same metrics can be shared by several concurrent
+ * experiments, in which case they are aggregated.
+ */
+public class Metrics implements MetricsMBean {
+    /**
+     * The phases of an experiment.
+     */
+    public enum Phase {
+        /**
+         * Building or loading the network.
+         */
+        BUILD,
+
+        /**
+         * Exporting the network as a snapshot or a graph.
+         */
+        EXPORT,
+
+        /**
+         * Running the simulations.
+         */
+        SIMULATE,
+
+        /**
+         * Writing the results.
+         */
+        WRITE
+    }
+
+    private final long start = System.nanoTime();
+    private final LongAdder experiments = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder expectedLookups = new LongAdder();
+    private final LongAdder hops = new LongAdder();
+    private final LongAdder[] times = new LongAdder[Phase.values().length];
+
+    /**
+     * Creates new, empty {@link Metrics}.
+     */
+    public Metrics() {
+        for (int i = 0; i < times.length; i++)
+            times[i] = new LongAdder();
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, with the name
+     * {@code P2PBC:type=Metrics}, so that they can be read by any JMX client.
+     *
+     * @throws IllegalStateException if the metrics cannot be registered.
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("P2PBC:type=Metrics"));
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Records a completed experiment.
+     */
+    public void addExperiment() {
+        experiments.increment();
+    }
+
+    /**
+     * Records that {@code count} lookups are going to be performed.
+     *
+     * @param count the number of lookups.
+     */
+    public void expectLookups(long count) {
+        expectedLookups.add(count);
+    }
+
+    /**
+     * Records {@code count} lookups, with {@code hops} hops in total.
+     *
+     * @param count the number of lookups.
+     * @param hops the total number of hops of the lookups.
+     */
+    public void addLookups(long count, long hops) {
+        lookups.add(count);
+        this.hops.add(hops);
+    }
+
+    /**
+     * Adds the given time to the one spent in {@code phase}.
+     *
+     * @param phase the {@link Phase}.
+     * @param nanos the time, in nanoseconds.
+     */
+    public void addTime(Phase phase, long nanos) {
+        times[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * Returns the total time spent in {@code phase}, in seconds.
+     *
+     * @param phase the {@link Phase}.
+     * @return the time spent in the phase.
+     */
+    public double getTime(Phase phase) {
+        return times[phase.ordinal()].sum()/1e9;
+    }
+
+    @Override
+    public long getExperiments() {
+        return experiments.sum();
+    }
+
+    @Override
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    @Override
+    public long getExpectedLookups() {
+        return expectedLookups.sum();
+    }
+
+    @Override
+    public long getHops() {
+        return hops.sum();
+    }
+
+    @Override
+    public double getMeanPathLength() {
+        long count = lookups.sum();
+
+        return count == 0? 0. : (double) hops.sum()/count;
+    }
+
+    @Override
+    public double getLookupRate() {
+        return lookups.sum()/((System.nanoTime() - start)/1e9);
+    }
+
+    @Override
+    public double getBuildTime() {
+        return getTime(Phase.BUILD);
+    }
+
+    @Override
+    public double getExportTime() {
+        return getTime(Phase.EXPORT);
+    }
+
+    @Override
+    public double getSimulateTime() {
+        return getTime(Phase.SIMULATE);
+    }
+
+    @Override
+    public double getWriteTime() {
+        return getTime(Phase.WRITE);
+    }
+
+    /**
+     * Returns a snapshot of the metrics, together with the seconds elapsed
+     * since their creation.
+     *
+     * @return a map from the names of the metrics to their values.
+     */
+    public Map<String, Object> snapshot() {
+        LinkedHashMap<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("elapsed", (System.nanoTime() - start)/1e9);
+        snapshot.put("experiments", getExperiments());
+        snapshot.put("lookups", getLookups());
+        snapshot.put("expectedLookups", getExpectedLookups());
+        snapshot.put("hops", getHops());
+        snapshot.put("meanPathLength", getMeanPathLength());
+        snapshot.put("lookupRate", getLookupRate());
+
+        for (Phase phase : Phase.values())
+            snapshot.put(phase.name().toLowerCase() + "Time", getTime(phase));
+
+        return snapshot;
+    }
+}
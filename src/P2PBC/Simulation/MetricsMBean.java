@@ -0,0 +1,78 @@
+package P2PBC.Simulation;
+
+/**
+ * This interface exposes the {@link Metrics} of the simulations through JMX.
+ */
+public interface MetricsMBean {
+    /**
+     * Returns the number of experiments completed so far.
+     *
+     * @return the number of experiments.
+     */
+    long getExperiments();
+
+    /**
+     * Returns the number of lookups performed so far.
+     *
+     * @return the number of lookups.
+     */
+    long getLookups();
+
+    /**
+     * Returns the number of lookups of the simulations started so far,
+     * including the ones still to be performed.
+     *
+     * @return the number of expected lookups.
+     */
+    long getExpectedLookups();
+
+    /**
+     * Returns the total number of hops of the lookups performed so far.
+     *
+     * @return the number of hops.
+     */
+    long getHops();
+
+    /**
+     * Returns the mean number of hops of the lookups performed so far.
+     *
+     * @return the mean path length.
+     */
+    double getMeanPathLength();
+
+    /**
+     * Returns the average number of lookups per second since the creation of
+     * the metrics.
+     *
+     * @return the lookup rate.
+     */
+    double getLookupRate();
+
+    /**
+     * Returns the total time spent building or loading networks, in seconds.
+     *
+     * @return the build time.
+     */
+    double getBuildTime();
+
+    /**
+     * Returns the total time spent exporting networks, in seconds.
+     *
+     * @return the export time.
+     */
+    double getExportTime();
+
+    /**
+     * Returns the total time spent simulating, in seconds.
+     *
+     * @return the simulation time.
+     */
+    double getSimulateTime();
+
+    /**
+     * Returns the total time spent writing results, in seconds.
+     *
+     * @return the write time.
+     */
+    double getWriteTime();
+}
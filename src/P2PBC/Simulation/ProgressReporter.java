@@ -0,0 +1,55 @@
+package P2PBC.Simulation;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class periodically reports the {@link Metrics} of the simulations from
+ * its own daemon thread, so that the reports are rate-limited and the
+ * workers never wait for them. The report is performed a last time when the
+ * reporter is closed.
+ */
+public class ProgressReporter implements Closeable {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "progress-reporter");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+    private final Metrics metrics;
+    private final Consumer<Metrics> report;
+
+    /**
+     * Creates a new {@link ProgressReporter}, which immediately starts
+     * reporting the given metrics every {@code period} milliseconds.
+     *
+     * @param metrics the {@link Metrics} to be reported.
+     * @param period the time between two reports, in milliseconds.
+     * @param report the action that reports the metrics.
+     */
+    public ProgressReporter(Metrics metrics, long period, Consumer<Metrics> report) {
+        this.metrics = metrics;
+        this.report = report;
+        executor.scheduleAtFixedRate(() -> report.accept(metrics), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic reports, waiting for the current one, and reports
+     * the metrics a last time.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        report.accept(metrics);
+    }
+}
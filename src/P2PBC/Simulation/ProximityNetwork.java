@@ -0,0 +1,252 @@
+package P2PBC.Simulation;
+
+import P2PBC.Chord.Identifier;
+import P2PBC.Chord.Network;
+
+import java.net.InetSocketAddress;
+import java.util.function.IntConsumer;
+
+/**
+ * This class makes the routing of a {@link Network} aware of the latency of
+ * its links, given by a {@link LatencyModel}, with two techniques that can be
+ * enabled independently:
+ *
+ *  - proximity neighbour selection (PNS): the {@code i}-th finger of a node
+ *    is the closest one, by latency, among the first {@code candidates}
+ *    nodes in {@code [id + 2^i, id + 2^(i+1))}, instead of the first one.
+ *    The successor is never replaced, so lookups stay correct;
+ *  - proximity route selection (PRS): every hop goes to the preceding finger
+ *    minimizing the latency of the link plus the expected latency of the
+ *    rest of the path, estimated as the mean latency of a finger times the
+ *    expected number of hops from the finger to the key, instead of the
+ *    closest preceding finger.
+ *
+ * The identifiers, peers and addresses are the ones of the wrapped network,
+ * so the same lookups can be compared with and without proximity. Valid
+ * only if {@link Identifier#isCompact()} holds.
+ */
+public class ProximityNetwork implements Network {
+    private final Network network;
+    private final LatencyModel model;
+    private final boolean routing;
+    private final int bits;
+    private final long[] ids;
+    private final int[] fingers;
+    private final int[] routingTableSizes;
+    private final double hopLatency;
+
+    /**
+     * Creates a new {@link ProximityNetwork} on top of the given network.
+     *
+     * @param network the {@link Network} whose nodes are used.
+     * @param model the {@link LatencyModel} of the links.
+     * @param candidates the number of candidates of every finger. With
+     *                   {@code 1}, the fingers are the ones of a standard
+     *                   Chord ring, i.e., PNS is disabled.
+     * @param routing if {@code true}, enables PRS.
+     * @throws IllegalArgumentException if {@code candidates} is not positive,
+     * the identifiers are not compact or the network has more than
+     * {@code (2^31 - 1)/BITS} nodes.
+     */
+    public ProximityNetwork(Network network, LatencyModel model, int candidates, boolean routing) {
+        if (candidates < 1 || !Identifier.isCompact())
+            throw new IllegalArgumentException("Proximity requires a positive number of candidates and BITS <= "
+                    + Identifier.MAX_COMPACT_BITS + ".");
+
+        // Every node keeps all its fingers, even the repeated ones, since the
+        // selected ones cannot be recovered by distance
+        if ((long) network.size()*Identifier.getBitLength() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Proximity requires NODES*BITS <= 2^31 - 1.");
+
+        int size = network.size();
+        this.network = network;
+        this.model = model;
+        this.routing = routing;
+        bits = Identifier.getBitLength();
+        ids = new long[size];
+        fingers = new int[size*bits];
+        routingTableSizes = new int[size];
+        double latencies = 0;
+
+        for (int i = 0; i < size; i++)
+            ids[i] = network.getIdentifier(i).longValue();
+
+        for (int node = 0; node < size; node++)
+            for (int i = 0; i < bits; i++) {
+                int finger = selectFinger(node, i, candidates);
+                fingers[node*bits + i] = finger;
+                latencies += model.latency(node, finger);
+
+                if (i == 0 || finger != fingers[node*bits + i - 1])
+                    routingTableSizes[node]++;
+            }
+
+        hopLatency = latencies/fingers.length;
+    }
+
+    /**
+     * Parses the proximity techniques to be used on the given network. The
+     * {@code spec} is {@code pns:[k]}, {@code prs} or {@code pns:[k]+prs},
+     * where {@code k} is the number of candidates of every finger.
+     *
+     * @param spec the specification of the techniques.
+     * @param network the {@link Network} whose nodes are used.
+     * @param model the {@link LatencyModel} of the links.
+     * @return the corresponding {@link ProximityNetwork}.
+     * @throws IllegalArgumentException if {@code spec} is not a valid
+     * specification.
+     */
+    public static ProximityNetwork parse(String spec, Network network, LatencyModel model) {
+        int candidates = 1;
+        boolean routing = false;
+
+        try {
+            for (String part : spec.trim().toLowerCase().split("\\+")) {
+                String[] parts = part.split(":");
+
+                if (parts[0].equals("pns") && parts.length == 2 && candidates == 1)
+                    candidates = Integer.parseInt(parts[1]);
+                else if (parts[0].equals("prs") && parts.length == 1 && !routing)
+                    routing = true;
+                else
+                    throw new IllegalArgumentException("Invalid proximity: " + spec);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid proximity: " + spec);
+        }
+
+        return new ProximityNetwork(network, model, candidates, routing);
+    }
+
+    /**
+     * Checks whether the network uses proximity route selection.
+     *
+     * @return {@code true} if PRS is enabled.
+     */
+    public boolean isRouting() {
+        return routing;
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public long getGap(int node) {
+        return network.getGap(node);
+    }
+
+    @Override
+    public int getPeer(int node) {
+        return network.getPeer(node);
+    }
+
+    @Override
+    public int getPeerCount() {
+        return network.getPeerCount();
+    }
+
+    @Override
+    public int getRoutingTableSize(int node) {
+        return routingTableSizes[node];
+    }
+
+    @Override
+    public Identifier getIdentifier(int node) {
+        return network.getIdentifier(node);
+    }
+
+    @Override
+    public int getFinger(int node, int i) {
+        return fingers[node*bits + i];
+    }
+
+    @Override
+    public InetSocketAddress getAddress(int node) {
+        return network.getAddress(node);
+    }
+
+    @Override
+    public int route(int source, long key, IntConsumer visitor) {
+        long position = Identifier.position(key);
+        int node = source;
+
+        while (true) {
+            visitor.accept(node);
+            long id = ids[node];
+
+            if (Identifier.isBetween(position, ids[(node + ids.length - 1) % ids.length], id))
+                return node;
+
+            int successor = fingers[node*bits];
+
+            if (Identifier.isBetween(position, id, ids[successor])) {
+                visitor.accept(successor);
+
+                return successor;
+            }
+
+            int next = routing? cheapestPrecedingFinger(node, position) : closestPrecedingFinger(node, position);
+
+            // Stops when the network is circular
+            if (next == node)
+                return node;
+
+            node = next;
+        }
+    }
+
+    // Selects the i-th finger of the node, as the closest one among the
+    // first candidates in its interval, or the first node after the start
+    // of the interval if it is empty
+    private int selectFinger(int node, int i, int candidates) {
+        int first = network.getFinger(node, i), best = first;
+
+        for (int k = 1, c = (first + 1) % ids.length; k < candidates && c != node; k++, c = (c + 1) % ids.length) {
+            // The distances in the interval are the ones whose bit i is the
+            // highest one set
+            if (Identifier.subtract(ids[c], ids[node]) >>> i != 1)
+                break;
+
+            if (model.latency(node, c) < model.latency(node, best))
+                best = c;
+        }
+
+        return best;
+    }
+
+    // Computes the closest preceding finger of the position
+    private int closestPrecedingFinger(int node, long position) {
+        for (int i = (node + 1)*bits - 1; i >= node*bits; i--)
+            if (Identifier.isBetween(ids[fingers[i]], ids[node], position))
+                return fingers[i];
+
+        return node;
+    }
+
+    // Computes the preceding finger of the position with the lowest
+    // expected latency to reach it: in a ring of n nodes, about half of the
+    // bits of the number of nodes left between a finger and the key
+    private int cheapestPrecedingFinger(int node, long position) {
+        int best = node;
+        double bestCost = Double.POSITIVE_INFINITY;
+
+        for (int i = (node + 1)*bits - 1; i >= node*bits; i--) {
+            int finger = fingers[i];
+
+            if (finger == best || !Identifier.isBetween(ids[finger], ids[node], position))
+                continue;
+
+            double nodesLeft = Math.scalb((double) Identifier.subtract(position, ids[finger]), -bits)*ids.length;
+            double cost = model.latency(node, finger) + hopLatency*0.5*Math.log(1 + nodesLeft)/Math.log(2);
+
+            if (cost < bestCost) {
+                best = finger;
+                bestCost = cost;
+            }
+        }
+
+        return best;
+    }
+}
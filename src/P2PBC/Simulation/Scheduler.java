@@ -0,0 +1,68 @@
+package P2PBC.Simulation;
+
+import java.util.PriorityQueue;
+
+/**
+ * This class implements a discrete-event scheduler. Events are actions to be
+ * executed at a given simulated time, and are processed in order of time.
+ * Events with the same time are processed in order of scheduling, so that
+ * every run is deterministic.
+ */
+public class Scheduler {
+    private final PriorityQueue<Event> queue = new PriorityQueue<>();
+    private double now = 0;
+    private long sequence = 0;
+
+    /**
+     * Returns the current simulated time.
+     *
+     * @return the current time.
+     */
+    public double now() {
+        return now;
+    }
+
+    /**
+     * Schedules an action to be executed after {@code delay} time units.
+     *
+     * @param delay the delay of the action, from the current time.
+     * @param action the action to be executed.
+     */
+    public void schedule(double delay, Runnable action) {
+        queue.add(new Event(now + delay, sequence++, action));
+    }
+
+    /**
+     * Executes the scheduled actions in order of time, until there are no
+     * more events or the next event is scheduled after {@code until}.
+     *
+     * @param until the time limit of the simulation.
+     */
+    public void run(double until) {
+        while (!queue.isEmpty() && queue.peek().time <= until) {
+            Event event = queue.poll();
+            now = event.time;
+            event.action.run();
+        }
+    }
+
+    // An action scheduled at a given time
+    private static class Event implements Comparable<Event> {
+        private final double time;
+        private final long sequence;
+        private final Runnable action;
+
+        private Event(double time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event event) {
+            int result = Double.compare(time, event.time);
+
+            return result != 0? result : Long.compare(sequence, event.sequence);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package P2PBC.Simulation;
+
+import P2PBC.Chord.Identifier;
+import P2PBC.Chord.Network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+
+/**
+ * This class simulates the Chord lookup protocol on a given {@link Network}.
+ * Every node performs the lookups given by a {@link Workload}. The nodes
+ * are split in contiguous segments, each one simulated by a different worker
+ * thread with its own {@link Statistics}, and every node draws its keys from
+ * its own seeded {@link SplittableRandom}, so the results do not depend on
+ * the number of workers.
+ * The lookups of a node are routed in batches of up to {@code BATCH_SIZE}
+ * keys, which share the computation of their common hops, and the progress
+ * of the workers is published to {@link Metrics} once per node, so it can be
+ * monitored without slowing the lookups down. Given a target precision, the
+ * lookups are performed in rounds, and the simulation stops as soon as its
+ * statistics have converged.
+ */
+public class Simulator {
+    private static final int BATCH_SIZE = 4096;
+
+    private final Network network;
+    private final Workload workload;
+    private int rounds = 0;
+
+    /**
+     * Creates a new {@link Simulator} on the given network, where every node
+     * performs the same number of lookups of uniformly random keys.
+     *
+     * @param network the {@link Network} to be simulated.
+     * @param lookups the number of lookups performed by each node.
+     */
+    public Simulator(Network network, int lookups) {
+        this(network, Workload.uniform((lookup, random) -> random.nextLong(), lookups));
+    }
+
+    /**
+     * Creates a new {@link Simulator} on the given network, with the given
+     * workload.
+     *
+     * @param network the {@link Network} to be simulated.
+     * @param workload the {@link Workload} of the nodes.
+     */
+    public Simulator(Network network, Workload workload) {
+        this.network = network;
+        this.workload = workload;
+    }
+
+    /**
+     * Returns the total number of lookups that will be performed.
+     *
+     * @return the total number of lookups.
+     */
+    public long getTotalLookups() {
+        return workload.getTotalLookups(network.size());
+    }
+
+    /**
+     * Runs the simulation using {@code threads} worker threads. Given the same
+     * network and {@code seed}, the results are reproducible, with any number
+     * of threads.
+     *
+     * @param threads the number of worker threads.
+     * @param seed the seed used to generate the seeds of the nodes, as in
+     *             {@link Workload#seeds(int, long)}.
+     * @param metrics the {@link Metrics} where the lookups are recorded while
+     *                they are performed.
+     * @return the merged {@link Statistics} of every worker.
+     * @throws InterruptedException if interrupted while waiting the workers.
+     */
+    public Statistics run(int threads, long seed, Metrics metrics) throws InterruptedException {
+        return run(threads, seed, 0, metrics);
+    }
+
+    /**
+     * Runs the simulation using {@code threads} worker threads, in rounds,
+     * stopping as soon as the relative errors of the mean path length and of
+     * the {@code queries} and {@code endNodes} loads, as given by
+     * {@link Statistics}, are at most {@code precision}, or the whole
+     * workload has been performed. In every round, every node performs a
+     * further share of its lookups, the same for every node, so the
+     * distribution of the sources is preserved. The size of a round is
+     * estimated from the errors of the previous ones, which shrink as the
+     * square root of the lookups, and at most doubles the lookups performed
+     * so far. The rounds only depend on the statistics, so the results are
+     * still reproducible with any number of threads. With a precision of
+     * {@code 0} the whole workload is performed in a single round.
+     *
+     * @param threads the number of worker threads.
+     * @param seed the seed used to generate the seeds of the nodes in every
+     *             round, as in {@link Workload#seeds(int, long)}.
+     * @param precision the target relative error, or {@code 0}.
+     * @param metrics the {@link Metrics} where the lookups are recorded while
+     *                they are performed.
+     * @return the merged {@link Statistics} of every worker.
+     * @throws InterruptedException if interrupted while waiting the workers.
+     */
+    public Statistics run(int threads, long seed, double precision, Metrics metrics)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Worker> workers = new ArrayList<>();
+        SplittableRandom seeds = new SplittableRandom(seed);
+        int segment = (network.size() + threads - 1)/threads, lookups = workload.getMeanLookups();
+        int done = 0, target = precision > 0? firstRound(precision) : lookups;
+        Statistics result;
+        rounds = 0;
+
+        for (int from = 0; from < network.size(); from += segment)
+            workers.add(new Worker(from, Math.min(from + segment, network.size()), metrics));
+
+        try {
+            while (true) {
+                long[] nodeSeeds = Workload.seeds(network.size(), seeds.nextLong());
+                long expected = 0;
+
+                for (int j = 0; j < network.size(); j++)
+                    expected += workload.getLookups(j, target) - workload.getLookups(j, done);
+
+                for (Worker worker : workers) {
+                    worker.seeds = nodeSeeds;
+                    worker.done = done;
+                    worker.target = target;
+                }
+
+                metrics.expectLookups(expected);
+                result = new Statistics(network.getPeerCount(), maxPathLength());
+
+                for (Future<Statistics> future : pool.invokeAll(workers))
+                    result.merge(future.get());
+
+                rounds++;
+                done = target;
+                double error = Math.max(result.getPathLengthError(),
+                        Math.max(result.getEndNodesError(), result.getQueriesError()));
+
+                if (done == lookups || error <= precision)
+                    break;
+
+                // The errors shrink as 1/sqrt(lookups), so the lookups needed
+                // grow as the square of the error. Every round adds at least a
+                // quarter of the lookups, so that the rounds do not crawl
+                double needed = Math.ceil(done*(error/precision)*(error/precision));
+                long least = done + Math.max(1, done/4);
+                target = (int) Math.min(lookups, Math.max(least, Math.min(2L*done, (long) needed)));
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of rounds of the last simulation.
+     *
+     * @return the number of rounds.
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    // Returns the lookups per node of the first round, i.e., a quarter of
+    // the ones needed to reach the precision on the loads if every peer had
+    // the same load, when the relative error is about 1.96/sqrt(lookups per
+    // peer). Uneven loads converge faster, and may stop earlier
+    private int firstRound(double precision) {
+        double perPeer = (1.96/precision)*(1.96/precision)/4;
+        double perNode = Math.ceil(perPeer*network.getPeerCount()/network.size());
+
+        return (int) Math.min(workload.getMeanLookups(), Math.max(1, perNode));
+    }
+
+    // In a stable Chord ring every hop halves the distance to the key, so
+    // paths are at most one hop longer than the bit length
+    private static int maxPathLength() {
+        return Identifier.getBitLength() + 1;
+    }
+
+    // Simulates the lookups of the nodes in the range [from, to), from the
+    // done-th to the target-th of the scaled workload
+    private class Worker implements Callable<Statistics>, Network.BatchVisitor {
+        private final Statistics statistics = new Statistics(network.getPeerCount(), maxPathLength());
+        private final long[] batch = new long[BATCH_SIZE];
+        private final int[] owners = new int[BATCH_SIZE];
+        private final int[] pathLengths = new int[BATCH_SIZE];
+        private final int from;
+        private final int to;
+        private final Metrics metrics;
+        private long[] seeds;
+        private int done;
+        private int target;
+
+        private Worker(int from, int to, Metrics metrics) {
+            this.from = from;
+            this.to = to;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Statistics call() {
+            KeyDistribution keys = workload.getKeys();
+
+            for (int j = from; j < to; j++) {
+                if (done == 0)
+                    statistics.addNode(network.getPeer(j), network.getGap(j), network.getRoutingTableSize(j));
+
+                int start = workload.getLookups(j, done), lookups = workload.getLookups(j, target) - start;
+                long first = workload.getFirstLookup(j) + start, hops = 0;
+                SplittableRandom random = new SplittableRandom(seeds[j]);
+
+                // Keys are drawn in the same order as if they were routed one
+                // by one
+                for (int i = 0, count; i < lookups; i += count) {
+                    count = Math.min(lookups - i, BATCH_SIZE);
+
+                    for (int k = 0; k < count; k++)
+                        batch[k] = keys.nextKey(first + i + k, random);
+
+                    network.route(j, batch, count, owners, pathLengths, this);
+
+                    for (int k = 0; k < count; k++) {
+                        statistics.addLookup(network.getPeer(owners[k]), pathLengths[k]);
+                        hops += pathLengths[k];
+                    }
+                }
+
+                metrics.addLookups(lookups, hops);
+            }
+
+            return statistics;
+        }
+
+        @Override
+        public void accept(int node, int lookups) {
+            statistics.addQueries(network.getPeer(node), lookups);
+        }
+    }
+}
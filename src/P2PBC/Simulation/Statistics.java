@@ -0,0 +1,269 @@
+package P2PBC.Simulation;
+
+import P2PBC.Chord.Identifier;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class collects the statistics of a lookup simulation, identifying the
+ * physical peers by their index in the {@link P2PBC.Chord.Network}, so that
+ * the load of all the virtual nodes of a peer is aggregated. All the counters
+ * are dense primitive arrays, so that recording a hop or a lookup does not
+ * box, hash or allocate anything. Each worker of a {@link Simulator} fills
+ * its own {@link Statistics}, which are then merged together by summing the
+ * arrays at the end of the simulation.
+ */
+public class Statistics {
+    private static final double Z_95 = 1.96;
+
+    private final int[] queries;
+    private final int[] endNodes;
+    private final long[] gaps;
+    private final int[] routingEntries;
+    private long[] pathLengths;
+
+    /**
+     * Creates an empty {@link Statistics} for a network of {@code peers}
+     * physical peers.
+     *
+     * @param peers the number of peers in the network.
+     * @param maxPathLength the expected maximum path length. Longer paths are
+     *                      still recorded, growing the histogram.
+     */
+    public Statistics(int peers, int maxPathLength) {
+        queries = new int[peers];
+        endNodes = new int[peers];
+        gaps = new long[peers];
+        routingEntries = new int[peers];
+        pathLengths = new long[maxPathLength + 1];
+    }
+
+    /**
+     * Records a (virtual) node of a peer, adding the gap between the node
+     * and its predecessor, i.e., the number of keys it owns, and the size of
+     * its routing table to the ones of the peer.
+     *
+     * @param peer the index of the peer running the node.
+     * @param gap the gap between the node and its predecessor.
+     * @param routingTableSize the number of distinct entries in the routing
+     *                         table of the node.
+     */
+    public void addNode(int peer, long gap, int routingTableSize) {
+        gaps[peer] += gap;
+        routingEntries[peer] += routingTableSize;
+    }
+
+    /**
+     * Records that the given peer has been queried during a lookup.
+     *
+     * @param peer the index of the queried peer.
+     */
+    public void addQuery(int peer) {
+        queries[peer]++;
+    }
+
+    /**
+     * Records that the given peer has been queried during several lookups.
+     *
+     * @param peer the index of the queried peer.
+     * @param lookups the number of lookups querying the peer.
+     */
+    public void addQueries(int peer, int lookups) {
+        queries[peer] += lookups;
+    }
+
+    /**
+     * Records the outcome of a lookup.
+     *
+     * @param end the index of the peer of the last node in the path.
+     * @param pathLength the number of hops of the path.
+     */
+    public void addLookup(int end, int pathLength) {
+        if (pathLength >= pathLengths.length)
+            pathLengths = Arrays.copyOf(pathLengths, pathLength + 1);
+
+        pathLengths[pathLength]++;
+        endNodes[end]++;
+    }
+
+    /**
+     * Adds the statistics collected by {@code other} to this one.
+     *
+     * @param other the {@link Statistics} to be merged.
+     */
+    public void merge(Statistics other) {
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] += other.queries[i];
+            endNodes[i] += other.endNodes[i];
+            gaps[i] += other.gaps[i];
+            routingEntries[i] += other.routingEntries[i];
+        }
+
+        if (other.pathLengths.length > pathLengths.length)
+            pathLengths = Arrays.copyOf(pathLengths, other.pathLengths.length);
+
+        for (int i = 0; i < other.pathLengths.length; i++)
+            pathLengths[i] += other.pathLengths[i];
+    }
+
+    /**
+     * Returns the number of lookups recorded so far.
+     *
+     * @return the number of lookups.
+     */
+    public long getLookups() {
+        long lookups = 0;
+
+        for (long count : pathLengths)
+            lookups += count;
+
+        return lookups;
+    }
+
+    /**
+     * Returns the half-width of the 95% confidence interval of the mean path
+     * length, relative to the mean.
+     *
+     * @return the relative error of the mean path length, or
+     * {@link Double#POSITIVE_INFINITY} if fewer than two lookups have been
+     * recorded.
+     */
+    public double getPathLengthError() {
+        long lookups = 0;
+        double sum = 0, squares = 0;
+
+        for (int i = 0; i < pathLengths.length; i++) {
+            lookups += pathLengths[i];
+            sum += (double) i*pathLengths[i];
+            squares += (double) i*i*pathLengths[i];
+        }
+
+        if (lookups < 2)
+            return Double.POSITIVE_INFINITY;
+
+        double mean = sum/lookups, variance = Math.max(0, (squares - sum*mean)/(lookups - 1));
+
+        return variance == 0? 0 : Z_95*Math.sqrt(variance/lookups)/mean;
+    }
+
+    /**
+     * Returns 1.96 times the standard error of the vector of the number of
+     * lookups ending at every peer, relative to its Euclidean norm, i.e., the
+     * relative precision of the {@code endNodes} loads, as if the lookups
+     * were independent.
+     *
+     * @return the relative error of the end node loads, or
+     * {@link Double#POSITIVE_INFINITY} if no lookup has been recorded.
+     */
+    public double getEndNodesError() {
+        return loadError(endNodes, getLookups());
+    }
+
+    /**
+     * Returns the relative precision of the {@code queries} loads, as in
+     * {@link Statistics#getEndNodesError()}.
+     *
+     * @return the relative error of the query loads, or
+     * {@link Double#POSITIVE_INFINITY} if no lookup has been recorded.
+     */
+    public double getQueriesError() {
+        return loadError(queries, getLookups());
+    }
+
+    /**
+     * Stores the collected histograms in {@code results}, using the keys
+     * {@code gaps}, {@code pathLengths}, {@code queries}, {@code endNodes}
+     * and {@code routingEntries}. The load imbalance of the peers is stored
+     * with the key {@code loadImbalance}, having for {@code gaps} (only if
+     * the bit length is at most {@link Identifier#MAX_COMPACT_BITS}),
+     * {@code queries} and {@code endNodes} the ratio between the maximum and
+     * the mean load
+     * ({@code maxOverMean}) and the Gini coefficient of the loads
+     * ({@code gini}, from 0 if every node has the same load to almost 1 if a
+     * single node has all of it).
+     *
+     * @param results the map where the histograms will be stored.
+     */
+    public void writeTo(Map<String, Object> results) {
+        TreeMap<Integer, Long> pathLengthHist = new TreeMap<>();
+        TreeMap<String, Object> imbalance = new TreeMap<>();
+        long[] sortedQueries = sorted(queries);
+        long[] sortedEndNodes = sorted(endNodes);
+        long[] sortedGaps = gaps.clone();
+        Arrays.sort(sortedGaps);
+
+        for (int i = 0; i < pathLengths.length; i++)
+            if (pathLengths[i] > 0)
+                pathLengthHist.put(i, pathLengths[i]);
+
+        imbalance.put("queries", imbalance(sortedQueries));
+        imbalance.put("endNodes", imbalance(sortedEndNodes));
+
+        // The gaps of wide rings are truncated to 64 bits
+        if (Identifier.isCompact())
+            imbalance.put("gaps", imbalance(sortedGaps));
+
+        results.put("gaps", histogram(sortedGaps));
+        results.put("pathLengths", pathLengthHist);
+        results.put("queries", histogram(sortedQueries));
+        results.put("endNodes", histogram(sortedEndNodes));
+        results.put("routingEntries", histogram(sorted(routingEntries)));
+        results.put("loadImbalance", imbalance);
+    }
+
+    // Returns 1.96 times the standard error of the vector of the loads of the
+    // peers, relative to its norm. Every lookup adds 1 to the load of a peer
+    // with probability load/lookups, independently of the other lookups, so
+    // the variance of the load is load*(1 - load/lookups)
+    private static double loadError(int[] loads, long lookups) {
+        double variance = 0, squares = 0;
+
+        for (int load : loads) {
+            variance += load*(1 - (double) load/lookups);
+            squares += (double) load*load;
+        }
+
+        return squares == 0? Double.POSITIVE_INFINITY : Z_95*Math.sqrt(Math.max(0, variance)/squares);
+    }
+
+    // Copies the counters into a sorted long array
+    private static long[] sorted(int[] counters) {
+        long[] values = Arrays.stream(counters).asLongStream().toArray();
+        Arrays.sort(values);
+
+        return values;
+    }
+
+    // Computes the max/mean ratio and the Gini coefficient of the sorted
+    // loads
+    static TreeMap<String, Double> imbalance(long[] loads) {
+        TreeMap<String, Double> result = new TreeMap<>();
+        double total = 0, weighted = 0;
+
+        for (int i = 0; i < loads.length; i++) {
+            total += loads[i];
+            weighted += (i + 1.)*loads[i];
+        }
+
+        int n = loads.length;
+        result.put("maxOverMean", total == 0? 0. : (double) loads[n - 1]*n/total);
+        result.put("gini", total == 0? 0. : 2*weighted/(n*total) - (n + 1.)/n);
+
+        return result;
+    }
+
+    // Counts the occurrences of each value of the sorted array
+    static TreeMap<Long, Integer> histogram(long[] values) {
+        TreeMap<Long, Integer> histogram = new TreeMap<>();
+
+        for (int i = 0, j; i < values.length; i = j) {
+            for (j = i + 1; j < values.length && values[j] == values[i]; j++);
+
+            histogram.put(values[i], j - i);
+        }
+
+        return histogram;
+    }
+}
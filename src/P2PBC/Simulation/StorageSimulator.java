@@ -0,0 +1,281 @@
+package P2PBC.Simulation;
+
+import P2PBC.Chord.Network;
+import P2PBC.Chord.NodeStore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+
+/**
+ * This class simulates a replicated key-value store on top of the Chord
+ * lookup protocol. Every node has its own {@link NodeStore}. A put is routed
+ * from its node to the owner of the key, which stores the value and
+ * replicates it on the nodes of its successor list, skipping the virtual
+ * nodes of peers that already hold a copy, so that every value is stored by
+ * {@code replication} distinct peers. A get is routed to the owner, which
+ * serves it from its own store.
+ *
+ * Every node first puts the keys given by a {@link Workload} and then gets
+ * the same keys, in the same order, so every get should find its value. The
+ * nodes are split in contiguous segments among the worker threads, as in the
+ * {@link Simulator}.
+ */
+public class StorageSimulator {
+    private static final int RECORD_OVERHEAD = 8;
+
+    private final Network network;
+    private final Workload workload;
+    private final int replication;
+    private final int valueSize;
+    private final NodeStore[] stores;
+    private final int[] replicas;
+    private long puts = 0;
+    private long gets = 0;
+    private long putHops = 0;
+    private long getHops = 0;
+    private long replicationMessages = 0;
+    private long missingReads = 0;
+    private double writeTime = 0;
+    private double readTime = 0;
+
+    /**
+     * Creates a new {@link StorageSimulator} on the given network, with empty
+     * stores.
+     *
+     * @param network the {@link Network} to be simulated.
+     * @param workload the {@link Workload} of the nodes, used for both puts
+     *                 and gets.
+     * @param replication the number of distinct peers storing every value,
+     *                    including the owner. It is reduced to the number of
+     *                    peers of the network, if larger.
+     * @param valueSize the size of the values, in bytes, at least 8.
+     * @throws IllegalArgumentException if the replication factor is not
+     * positive, the values are shorter than 8 bytes or the nodes would have
+     * more than 2^31 - 1 replicas in total.
+     */
+    public StorageSimulator(Network network, Workload workload, int replication, int valueSize) {
+        if (replication < 1 || valueSize < 8)
+            throw new IllegalArgumentException("Replication must be positive and values at least 8 bytes long.");
+
+        long replicaCount = (long) network.size()*(Math.min(replication, network.getPeerCount()) - 1);
+
+        if (replicaCount > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The replicas of all the nodes must be at most 2^31 - 1.");
+
+        this.network = network;
+        this.workload = workload;
+        this.replication = Math.min(replication, network.getPeerCount());
+        this.valueSize = valueSize;
+        stores = new NodeStore[network.size()];
+        replicas = new int[(int) replicaCount];
+
+        for (int i = 0; i < stores.length; i++) {
+            stores[i] = new NodeStore(valueSize);
+            findReplicas(i);
+        }
+    }
+
+    /**
+     * Runs the puts and then the gets, using {@code threads} worker threads.
+     *
+     * @param threads the number of worker threads.
+     * @param seed the seed used to generate the seeds of the nodes, as in
+     *             {@link Workload#seeds(int, long)}.
+     * @return this {@link StorageSimulator}.
+     * @throws IllegalArgumentException if the values of a store would not fit
+     * in 2^31 - 1 bytes.
+     * @throws InterruptedException if interrupted while waiting the workers.
+     */
+    public StorageSimulator run(int threads, long seed) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Worker> workers = new ArrayList<>();
+        long[] seeds = Workload.seeds(network.size(), seed);
+        int segment = (network.size() + threads - 1)/threads;
+
+        for (int from = 0; from < network.size(); from += segment)
+            workers.add(new Worker(from, Math.min(from + segment, network.size()), seeds));
+
+        try {
+            long start = System.nanoTime();
+            waitAll(pool.invokeAll(workers));
+            writeTime = (System.nanoTime() - start)/1e9;
+
+            for (Worker worker : workers)
+                worker.reading = true;
+
+            start = System.nanoTime();
+            waitAll(pool.invokeAll(workers));
+            readTime = (System.nanoTime() - start)/1e9;
+        } finally {
+            pool.shutdown();
+        }
+
+        for (Worker worker : workers) {
+            puts += worker.puts;
+            gets += worker.gets;
+            putHops += worker.putHops;
+            getHops += worker.getHops;
+            replicationMessages += worker.replicationMessages;
+            missingReads += worker.missingReads;
+        }
+
+        return this;
+    }
+
+    /**
+     * Stores the results of the simulation in {@code results}: the
+     * replication factor and value size, the number of puts and gets and
+     * their mean path lengths, the read and write throughput in operations
+     * per second, the number of replication messages and their bytes, the
+     * number of gets that did not find their value ({@code missingReads}),
+     * the total bytes stored and allocated by the stores, and the histogram
+     * and load imbalance of the bytes stored by every peer.
+     *
+     * @param results the map where the results will be stored.
+     */
+    public void writeTo(Map<String, Object> results) {
+        long[] peerBytes = new long[network.getPeerCount()];
+        long stored = 0, allocated = 0, entries = 0;
+
+        for (int i = 0; i < stores.length; i++) {
+            peerBytes[network.getPeer(i)] += stores[i].getStoredBytes();
+            stored += stores[i].getStoredBytes();
+            allocated += stores[i].getAllocatedBytes();
+            entries += stores[i].size();
+        }
+
+        Arrays.sort(peerBytes);
+        results.put("replication", replication);
+        results.put("valueSize", valueSize);
+        results.put("puts", puts);
+        results.put("gets", gets);
+        results.put("meanPutPathLength", puts == 0? 0. : (double) putHops/puts);
+        results.put("meanGetPathLength", gets == 0? 0. : (double) getHops/gets);
+        results.put("writeThroughput", writeTime == 0? 0. : puts/writeTime);
+        results.put("readThroughput", readTime == 0? 0. : gets/readTime);
+        results.put("replicationMessages", replicationMessages);
+        results.put("replicationBytes", replicationMessages*(RECORD_OVERHEAD + valueSize));
+        results.put("missingReads", missingReads);
+        results.put("entries", entries);
+        results.put("storedBytes", stored);
+        results.put("allocatedBytes", allocated);
+        results.put("peerBytes", Statistics.histogram(peerBytes));
+        results.put("peerBytesImbalance", Statistics.imbalance(peerBytes));
+    }
+
+    // Finds the replicas of the node among its successors, one per peer,
+    // padding them with -1 if the ring has too few peers
+    private void findReplicas(int node) {
+        int offset = node*(replication - 1), count = 0;
+
+        for (int i = 1; i < network.size() && count < replication - 1; i++) {
+            int successor = (node + i) % network.size();
+            boolean taken = network.getPeer(successor) == network.getPeer(node);
+
+            for (int j = 0; j < count && !taken; j++)
+                taken = network.getPeer(replicas[offset + j]) == network.getPeer(successor);
+
+            if (!taken)
+                replicas[offset + count++] = successor;
+        }
+
+        Arrays.fill(replicas, offset + count, offset + replication - 1, -1);
+    }
+
+    // Waits for every worker, rethrowing their failures
+    private static void waitAll(List<Future<Void>> futures) throws InterruptedException {
+        try {
+            for (Future<Void> future : futures)
+                future.get();
+        } catch (ExecutionException e) {
+            // A store too large for its values is reported as invalid
+            // settings
+            if (e.getCause() instanceof IllegalArgumentException)
+                throw (IllegalArgumentException) e.getCause();
+
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Puts or gets the keys of the nodes in the range [from, to). The keys
+    // of every node are drawn from a generator with the same seed in both
+    // phases
+    private class Worker implements Callable<Void> {
+        private final int from;
+        private final int to;
+        private final long[] seeds;
+        private final ByteBuffer value = ByteBuffer.allocate(valueSize);
+        private boolean reading = false;
+        private int pathLength;
+        private final IntConsumer counter = node -> pathLength++;
+        private long puts = 0;
+        private long gets = 0;
+        private long putHops = 0;
+        private long getHops = 0;
+        private long replicationMessages = 0;
+        private long missingReads = 0;
+
+        private Worker(int from, int to, long[] seeds) {
+            this.from = from;
+            this.to = to;
+            this.seeds = seeds;
+        }
+
+        @Override
+        public Void call() {
+            KeyDistribution keys = workload.getKeys();
+            for (int j = from; j < to; j++) {
+                long first = workload.getFirstLookup(j);
+                SplittableRandom random = new SplittableRandom(seeds[j]);
+
+                for (int i = 0; i < workload.getLookups(j); i++) {
+                    long key = keys.nextKey(first + i, random);
+                    pathLength = -1;
+                    int owner = network.route(j, key, counter);
+
+                    if (reading)
+                        get(owner, key);
+                    else
+                        put(owner, key);
+                }
+            }
+
+            return null;
+        }
+
+        // Stores the value of the key on the owner and its replicas. The
+        // value starts with the key, so that gets can check it
+        private void put(int owner, long key) {
+            value.clear();
+
+            while (value.remaining() >= 8)
+                value.putLong(key);
+
+            value.clear();
+            stores[owner].put(key, value);
+            puts++;
+            putHops += pathLength;
+
+            for (int i = owner*(replication - 1); i < (owner + 1)*(replication - 1) && replicas[i] >= 0; i++) {
+                stores[replicas[i]].put(key, value);
+                replicationMessages++;
+            }
+        }
+
+        // Reads the value of the key from the owner
+        private void get(int owner, long key) {
+            value.clear();
+            gets++;
+            getHops += pathLength;
+
+            if (!stores[owner].get(key, value) || value.getLong(0) != key)
+                missingReads++;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package P2PBC.Simulation;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * This {@link KeyDistribution} replays the keys recorded in a trace file,
+ * i.e., a sequence of 64-bit big-endian keys. The {@code i}-th lookup of the
+ * workload searches the {@code i}-th key of the trace, wrapping around at its
+ * end, so the replay does not depend on the number of worker threads.
+ *
+ * The file is memory-mapped in read-only chunks of at most 1 GiB, and read
+ * with absolute (thread-safe) accesses, so the trace is streamed from the
+ * page cache on demand instead of being loaded into the heap.
+ */
+public class TraceKeys implements KeyDistribution {
+    private static final int CHUNK_SHIFT = 30;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    /**
+     * Maps the given trace file.
+     *
+     * @param path the path of the trace file.
+     * @throws IOException if the file cannot be mapped.
+     * @throws IllegalArgumentException if the file does not contain any key.
+     */
+    public TraceKeys(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size()/8;
+
+            if (size == 0)
+                throw new IllegalArgumentException("Empty trace file: " + path);
+
+            long bytes = size*8;
+            chunks = new MappedByteBuffer[(int) ((bytes - 1) >>> CHUNK_SHIFT) + 1];
+
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = (long) i << CHUNK_SHIFT;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(1L << CHUNK_SHIFT, bytes - offset));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keys in the trace.
+     *
+     * @return the size of the trace.
+     */
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public long nextKey(long lookup, SplittableRandom random) {
+        long offset = (lookup % size)*8;
+
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & ((1 << CHUNK_SHIFT) - 1)));
+    }
+}
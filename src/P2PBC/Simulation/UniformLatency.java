@@ -0,0 +1,43 @@
+package P2PBC.Simulation;
+
+import P2PBC.Chord.HashFunction;
+
+/**
+ * This {@link LatencyModel} gives every link a latency drawn uniformly at
+ * random in a range. The latency of a link is derived by hashing the indices
+ * of its endpoints with a seed, so it is the same in both directions and for
+ * every message, without storing a latency matrix.
+ */
+public class UniformLatency implements LatencyModel {
+    private final double min;
+    private final double range;
+    private final long seed;
+
+    /**
+     * Creates a new {@link UniformLatency} model.
+     *
+     * @param min the minimum latency, in milliseconds.
+     * @param max the maximum latency, in milliseconds.
+     * @param seed the seed of the link latencies.
+     * @throws IllegalArgumentException if {@code min} is negative or greater
+     * than {@code max}.
+     */
+    public UniformLatency(double min, double max, long seed) {
+        if (!(min >= 0 && min <= max))
+            throw new IllegalArgumentException("Latencies must satisfy 0 <= min <= max.");
+
+        this.min = min;
+        this.range = max - min;
+        this.seed = seed;
+    }
+
+    @Override
+    public double latency(int from, int to) {
+        if (from == to)
+            return 0;
+
+        long link = (long) Math.min(from, to) << 32 | Math.max(from, to);
+
+        return min + range*(HashFunction.MIX64.hash(link ^ seed) >>> 11)*0x1p-53;
+    }
+}
@@ -0,0 +1,194 @@
+package P2PBC.Simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * This class models the lookups performed by the nodes of a network during a
+ * simulation: how many lookups every node performs, and which keys they
+ * search, through a {@link KeyDistribution}. The lookups are numbered
+ * globally, node after node, and every node draws its keys from its own
+ * random generator, so that every lookup has the same index and the same key
+ * regardless of how the nodes are split among the workers.
+ */
+public class Workload {
+    private final KeyDistribution keys;
+    private final int lookups;
+    private final int[] nodeLookups;
+    private final long[] firstLookups;
+
+    // Creates a workload where every node performs the same number of
+    // lookups, or the given ones
+    private Workload(KeyDistribution keys, int lookups, int[] nodeLookups) {
+        this.keys = keys;
+        this.lookups = lookups;
+        this.nodeLookups = nodeLookups;
+
+        if (nodeLookups == null) {
+            firstLookups = null;
+        } else {
+            firstLookups = new long[nodeLookups.length + 1];
+
+            for (int i = 0; i < nodeLookups.length; i++)
+                firstLookups[i + 1] = firstLookups[i] + nodeLookups[i];
+        }
+    }
+
+    /**
+     * Creates a workload where every node performs the same number of
+     * lookups.
+     *
+     * @param keys the {@link KeyDistribution} of the searched keys.
+     * @param lookups the number of lookups performed by each node.
+     * @return a new {@link Workload}.
+     */
+    public static Workload uniform(KeyDistribution keys, int lookups) {
+        return new Workload(keys, lookups, null);
+    }
+
+    /**
+     * Creates a workload where the request rates of the nodes follow a Zipf
+     * distribution: the node with the {@code k}-th highest rate performs a
+     * number of lookups proportional to {@code 1/k^exponent}. The ranks are
+     * assigned to the nodes by a random permutation, and the total number of
+     * lookups is {@code lookups*nodes}, as in a uniform workload.
+     *
+     * @param keys the {@link KeyDistribution} of the searched keys.
+     * @param nodes the number of nodes in the network.
+     * @param lookups the average number of lookups performed by each node.
+     * @param exponent the exponent of the Zipf distribution.
+     * @param seed the seed of the random permutation.
+     * @return a new {@link Workload}.
+     * @throws IllegalArgumentException if the exponent is negative, or if a
+     * node would perform more than {@code 2^31 - 1} lookups.
+     */
+    public static Workload zipfRates(KeyDistribution keys, int nodes, int lookups, double exponent, long seed) {
+        if (!(exponent >= 0))
+            throw new IllegalArgumentException("Zipf distributions need exponent >= 0.");
+
+        int[] ranks = new int[nodes];
+        double[] weights = new double[nodes];
+        double sum = 0;
+        SplittableRandom random = new SplittableRandom(seed);
+
+        for (int i = 0; i < nodes; i++) {
+            int j = random.nextInt(i + 1);
+            ranks[i] = ranks[j];
+            ranks[j] = i + 1;
+        }
+
+        for (int i = 0; i < nodes; i++)
+            sum += weights[i] = Math.pow(ranks[i], -exponent);
+
+        // Rounds the shares down, then gives the remaining lookups to the
+        // nodes with the highest ranks
+        long total = (long) lookups*nodes, assigned = 0;
+        int[] nodeLookups = new int[nodes];
+        int[] byRank = new int[nodes];
+
+        for (int i = 0; i < nodes; i++) {
+            double share = total*weights[i]/sum;
+
+            // A node may also get one of the remaining lookups
+            if (share >= Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Every node must perform less than 2^31 - 1 lookups.");
+
+            nodeLookups[i] = (int) share;
+            assigned += nodeLookups[i];
+            byRank[ranks[i] - 1] = i;
+        }
+
+        for (int k = 0; assigned < total; k = (k + 1) % nodes, assigned++)
+            nodeLookups[byRank[k]]++;
+
+        return new Workload(keys, lookups, nodeLookups);
+    }
+
+    /**
+     * Draws the seeds of the random generators of the given number of nodes
+     * from a {@link SplittableRandom} with the given seed. The keys searched
+     * by node {@code i} are drawn from a {@link SplittableRandom} with the
+     * {@code i}-th seed, so they only depend on {@code seed}, and not on the
+     * number of workers.
+     *
+     * @param nodes the number of nodes in the network.
+     * @param seed the seed of the simulation.
+     * @return the seeds of the nodes.
+     */
+    public static long[] seeds(int nodes, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] seeds = new long[nodes];
+
+        for (int i = 0; i < nodes; i++)
+            seeds[i] = random.nextLong();
+
+        return seeds;
+    }
+
+    /**
+     * Returns the distribution of the searched keys.
+     *
+     * @return the {@link KeyDistribution} of the workload.
+     */
+    public KeyDistribution getKeys() {
+        return keys;
+    }
+
+    /**
+     * Returns the number of lookups performed by the given node.
+     *
+     * @param node the index of the node.
+     * @return the number of lookups of the node.
+     */
+    public int getLookups(int node) {
+        return nodeLookups == null? lookups : nodeLookups[node];
+    }
+
+    /**
+     * Returns the average number of lookups performed by each node.
+     *
+     * @return the average number of lookups per node.
+     */
+    public int getMeanLookups() {
+        return lookups;
+    }
+
+    /**
+     * Returns the number of lookups performed by the given node when the
+     * nodes only perform {@code mean} lookups on average, i.e., its share of
+     * a workload scaled down by {@code mean/}{@link Workload#getMeanLookups()},
+     * rounded down. If the workload performs no lookups, neither does the
+     * node.
+     *
+     * @param node the index of the node.
+     * @param mean the average number of lookups per node, at most
+     *             {@link Workload#getMeanLookups()}.
+     * @return the number of lookups of the node.
+     */
+    public int getLookups(int node, int mean) {
+        if (nodeLookups == null)
+            return mean;
+
+        return lookups == 0? 0 : (int) ((long) nodeLookups[node]*mean/lookups);
+    }
+
+    /**
+     * Returns the global index of the first lookup of the given node.
+     *
+     * @param node the index of the node.
+     * @return the index of the first lookup of the node.
+     */
+    public long getFirstLookup(int node) {
+        return firstLookups == null? (long) lookups*node : firstLookups[node];
+    }
+
+    /**
+     * Returns the total number of lookups performed by the given number of
+     * nodes.
+     *
+     * @param nodes the number of nodes in the network.
+     * @return the total number of lookups.
+     */
+    public long getTotalLookups(int nodes) {
+        return getFirstLookup(nodes);
+    }
+}
@@ -0,0 +1,84 @@
+package P2PBC.Simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * This {@link KeyDistribution} draws the keys {@code 1, ..., n} with a Zipf
+ * distribution, i.e., the key of rank {@code k} is searched with probability
+ * proportional to {@code 1/k^s}. The keys are sampled in constant expected
+ * time and space by rejection-inversion (W. Hörmann and G. Derflinger,
+ * "Rejection-inversion to generate variates from monotone discrete
+ * distributions", 1996), so there is no table of probabilities.
+ */
+public class ZipfKeys implements KeyDistribution {
+    /**
+     * The default number of distinct keys.
+     */
+    public static final int DEFAULT_KEYS = 1 << 20;
+
+    private final int keys;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralKeys;
+    private final double s;
+
+    /**
+     * Creates a new {@link ZipfKeys} distribution.
+     *
+     * @param exponent the exponent of the distribution.
+     * @param keys the number of distinct keys.
+     * @throws IllegalArgumentException if the exponent is negative or the
+     * number of keys is not positive.
+     */
+    public ZipfKeys(double exponent, int keys) {
+        if (!(exponent >= 0 && keys > 0))
+            throw new IllegalArgumentException("Zipf distributions need exponent >= 0 and keys > 0.");
+
+        this.keys = keys;
+        this.exponent = exponent;
+        hIntegralX1 = hIntegral(1.5) - 1;
+        hIntegralKeys = hIntegral(keys + 0.5);
+        s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    @Override
+    public long nextKey(long lookup, SplittableRandom random) {
+        while (true) {
+            double u = hIntegralKeys + random.nextDouble()*(hIntegralX1 - hIntegralKeys);
+            double x = hIntegralInverse(u);
+            int k = (int) Math.min(keys, Math.max(1, (long) (x + 0.5)));
+
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k))
+                return k;
+        }
+    }
+
+    // The integral of h, i.e., (x^(1 - exponent) - 1)/(1 - exponent)
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+
+        return expm1OverX((1 - exponent)*logX)*logX;
+    }
+
+    // The unnormalized probability function, 1/x^exponent
+    private double h(double x) {
+        return Math.exp(-exponent*Math.log(x));
+    }
+
+    // The inverse of hIntegral
+    private double hIntegralInverse(double x) {
+        double t = Math.max(-1, x*(1 - exponent));
+
+        return Math.exp(log1pOverX(t)*x);
+    }
+
+    // Computes log(1 + x)/x, also for x close to 0
+    private static double log1pOverX(double x) {
+        return Math.abs(x) > 1e-8? Math.log1p(x)/x : 1 - x*(0.5 - x*(1/3. - 0.25*x));
+    }
+
+    // Computes (e^x - 1)/x, also for x close to 0
+    private static double expm1OverX(double x) {
+        return Math.abs(x) > 1e-8? Math.expm1(x)/x : 1 + x*0.5*(1 + x/3*(1 + 0.25*x));
+    }
+}
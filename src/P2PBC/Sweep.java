@@ -0,0 +1,394 @@
+package P2PBC;
+
+import P2PBC.Simulation.Metrics;
+
+import org.apache.commons.cli.*;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class runs a parameter sweep, i.e., a set of experiments of the
+ * {@link Coordinator} whose options take several values, in the same JVM.
+ * A sweep is a comma-separated list of parameters {@code option=values},
+ * where {@code option} is the name of an option with an argument and
+ * {@code values} is either:
+ *
+ *  - a single value, or a list of values separated by {@code |};
+ *  - a range {@code FROM..TO:STEP}, where {@code STEP} is {@code +K},
+ *    {@code -K}, {@code xK} or {@code /K} (default: {@code +1}), whose
+ *    values go from {@code FROM} towards {@code TO}, included.
+ *
+ * The parameters of the same sweep vary together, so they must have the same
+ * number of values (or a single one), while the configurations of different
+ * sweeps are combined with each other. Every {@code {option}} in the other
+ * arguments is replaced by the value of the option, so that, e.g., every
+ * configuration can export its own graph.
+ *
+ * Configurations run concurrently, sharing the simulation threads, and each
+ * result is appended to the log as soon as it is ready. Since the bit length,
+ * the hash function, the successor lists and the route caches are global,
+ * configurations that differ in one of them never run together.
+ */
+public class Sweep {
+    private static final List<String> GLOBAL_OPTIONS = Arrays.asList(
+            "bits", "hash", "successors", "cache", "cache-size", "load-ring");
+    private static final int MAX_CONFIGURATIONS = 1 << 20;
+    private static final double TOLERANCE = 1e-9;
+
+    private final Options options;
+    private final List<String[]> configurations = new ArrayList<>();
+    private final List<String> labels = new ArrayList<>();
+    private final Set<String> swept = new HashSet<>();
+    private final int threads;
+
+    /**
+     * Creates a new {@link Sweep} of the given sweeps, starting from the
+     * given arguments.
+     *
+     * @param options the options of the {@link Coordinator}.
+     * @param args the arguments of the {@link Coordinator}, whose
+     *             {@code --sweep} options are ignored.
+     * @param sweeps the sweeps, as comma-separated lists of parameters.
+     * @throws IllegalArgumentException if a sweep or a resulting
+     * configuration is not valid.
+     */
+    public Sweep(Options options, String[] args, String[] sweeps) {
+        this.options = options;
+        List<Map<String, String>> product = Collections.singletonList(new LinkedHashMap<>());
+
+        for (String sweep : sweeps) {
+            List<Map<String, String>> combined = new ArrayList<>(), suffixes = parse(sweep);
+
+            for (Map<String, String> prefix : product)
+                for (Map<String, String> suffix : suffixes) {
+                    LinkedHashMap<String, String> configuration = new LinkedHashMap<>(prefix);
+                    configuration.putAll(suffix);
+                    combined.add(configuration);
+                }
+
+            if (combined.size() > MAX_CONFIGURATIONS)
+                throw new IllegalArgumentException("Sweeps must have at most " + MAX_CONFIGURATIONS
+                        + " configurations.");
+
+            product = combined;
+        }
+
+        List<String> base = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++)
+            if (args[i].equals("--sweep"))
+                i++;
+            else if (!args[i].startsWith("--sweep="))
+                base.add(args[i]);
+
+        for (Map<String, String> configuration : product) {
+            List<String> arguments = new ArrayList<>();
+            StringJoiner label = new StringJoiner(", ");
+
+            for (Map.Entry<String, String> parameter : configuration.entrySet()) {
+                arguments.add("--" + parameter.getKey());
+                arguments.add(parameter.getValue());
+                label.add(parameter.getKey() + "=" + parameter.getValue());
+            }
+
+            for (String arg : base) {
+                for (Map.Entry<String, String> parameter : configuration.entrySet())
+                    arg = arg.replace("{" + parameter.getKey() + "}", parameter.getValue());
+
+                arguments.add(arg);
+            }
+
+            configurations.add(arguments.toArray(new String[0]));
+            labels.add(label.toString());
+        }
+
+        String value = parse(configurations.get(0)).getOptionValue("threads");
+
+        try {
+            threads = value == null? Runtime.getRuntime().availableProcessors() : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Arguments must be numbers.");
+        }
+    }
+
+    /**
+     * Returns the number of configurations of the sweep.
+     *
+     * @return the number of configurations.
+     */
+    public int size() {
+        return configurations.size();
+    }
+
+    /**
+     * Runs every configuration of the sweep, appending its results to the
+     * log. A configuration that fails is reported and skipped.
+     *
+     * @param log the {@link ExperimentLog} where the results are appended.
+     * @param metrics the {@link Metrics} where the experiments are recorded.
+     * @return {@code true} if every configuration succeeded.
+     * @throws InterruptedException if interrupted while waiting the
+     * experiments.
+     */
+    public boolean run(ExperimentLog log, Metrics metrics) throws InterruptedException {
+        PrintStream silent = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {}
+        });
+        AtomicInteger done = new AtomicInteger(), failed = new AtomicInteger();
+        LinkedHashMap<List<String>, List<Integer>> groups = new LinkedHashMap<>();
+
+        for (int i = 0; i < configurations.size(); i++) {
+            CommandLine cmd = parse(configurations.get(i));
+            List<String> key = new ArrayList<>();
+
+            for (String option : GLOBAL_OPTIONS)
+                key.add(cmd.getOptionValue(option));
+
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+        }
+
+        for (List<Integer> group : groups.values()) {
+            int jobs = Math.max(1, Math.min(threads, group.size()));
+            String share = String.valueOf(Math.max(1, threads/jobs));
+            ExecutorService pool = Executors.newFixedThreadPool(jobs);
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int i : group)
+                futures.add(pool.submit(() -> {
+                    long start = System.nanoTime();
+                    String result;
+
+                    try {
+                        String[] args = configurations.get(i);
+
+                        // The threads are shared between the concurrent
+                        // experiments, unless they are swept too
+                        if (!swept.contains("threads"))
+                            args = prepend("--threads", share, args);
+
+                        Map<String, Object> results = Coordinator.run(parse(args), silent, metrics);
+                        long time = System.nanoTime();
+                        log.append(new JSONObject(results));
+                        metrics.addTime(Metrics.Phase.WRITE, System.nanoTime() - time);
+                        metrics.addExperiment();
+                        result = String.format("done in %.1f s.", (System.nanoTime() - start)/1e9);
+                    } catch (IllegalArgumentException e) {
+                        failed.incrementAndGet();
+                        result = e.getMessage();
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                        result = "I/O Exception: " + e.getMessage();
+                    }
+
+                    synchronized (System.out) {
+                        System.out.println("[" + done.incrementAndGet() + "/" + configurations.size() + "] "
+                                + labels.get(i) + ": " + result);
+                    }
+
+                    return null;
+                }));
+
+            try {
+                for (Future<?> future : futures)
+                    future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof InterruptedException)
+                    throw (InterruptedException) e.getCause();
+
+                throw e.getCause() instanceof RuntimeException? (RuntimeException) e.getCause()
+                        : new IllegalStateException(e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        return failed.get() == 0;
+    }
+
+    // Parses the arguments of a configuration
+    private CommandLine parse(String[] args) {
+        try {
+            return new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Parsing Error: " + e.getMessage());
+        }
+    }
+
+    // Parses a sweep into the list of its configurations, whose parameters
+    // vary together
+    private List<Map<String, String>> parse(String sweep) {
+        LinkedHashMap<String, List<String>> parameters = new LinkedHashMap<>();
+        int size = 1;
+
+        for (String parameter : sweep.split(",")) {
+            int equals = parameter.indexOf('=');
+            Option option = equals < 0? null : options.getOption(parameter.substring(0, equals).trim());
+
+            if (option == null || !option.hasArg() || option.getLongOpt() == null
+                    || Arrays.asList("sweep", "out", "convert").contains(option.getLongOpt()))
+                throw new IllegalArgumentException("Invalid sweep parameter: " + parameter);
+
+            // A parameter can only be swept once, in a single sweep
+            if (swept.contains(option.getLongOpt()))
+                throw new IllegalArgumentException("Repeated sweep parameter: " + option.getLongOpt());
+
+            List<String> values = expand(parameter.substring(equals + 1).trim());
+            parameters.put(option.getLongOpt(), values);
+            swept.add(option.getLongOpt());
+
+            if (values.size() > 1 && size > 1 && values.size() != size)
+                throw new IllegalArgumentException("The parameters of a sweep must have the same number of values: "
+                        + sweep);
+
+            size = Math.max(size, values.size());
+        }
+
+        List<Map<String, String>> result = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            LinkedHashMap<String, String> configuration = new LinkedHashMap<>();
+
+            for (Map.Entry<String, List<String>> parameter : parameters.entrySet()) {
+                List<String> values = parameter.getValue();
+                configuration.put(parameter.getKey(), values.get(values.size() == 1? 0 : i));
+            }
+
+            result.add(configuration);
+        }
+
+        return result;
+    }
+
+    // Expands the values of a parameter, either a list or a range. Ranges of
+    // integers are computed in long arithmetic, so they stay exact above 2^53
+    private static List<String> expand(String values) {
+        int range = values.indexOf("..");
+
+        if (range < 0)
+            return Arrays.asList(values.split("\\|"));
+
+        int colon = values.indexOf(':', range);
+        String step = colon < 0? "+1" : values.substring(colon + 1).trim();
+        String from = values.substring(0, range).trim();
+        String to = values.substring(range + 2, colon < 0? values.length() : colon).trim();
+        char operator = step.isEmpty()? ' ' : step.charAt(0);
+        List<String> result = new ArrayList<>();
+
+        try {
+            boolean integral = isLong(from) && isLong(to) && isLong(step.substring(1));
+            boolean increasing = operator == '+' || operator == 'x';
+            boolean additive = operator == '+' || operator == '-';
+
+            if (integral) {
+                long first = Long.parseLong(from), last = Long.parseLong(to), k = Long.parseLong(step.substring(1));
+                checkRange(values, operator, increasing? first > last : first < last,
+                        additive? k <= 0 : k <= 1 || first <= 0 || last <= 0);
+
+                // A step that overflows is past the end of the range
+                for (long value = first; increasing? value <= last : value >= last; ) {
+                    add(result, String.valueOf(value));
+
+                    try {
+                        switch (operator) {
+                            case '+': value = Math.addExact(value, k); break;
+                            case '-': value = Math.subtractExact(value, k); break;
+                            case 'x': value = Math.multiplyExact(value, k); break;
+                            default: value = Math.floorDiv(value, k);
+                        }
+                    } catch (ArithmeticException e) {
+                        break;
+                    }
+                }
+            } else {
+                double first = Double.parseDouble(from), last = Double.parseDouble(to);
+                double k = Double.parseDouble(step.substring(1));
+                checkRange(values, operator, increasing? first > last : first < last,
+                        additive? k <= 0 : k <= 1 || first <= 0 || last <= 0);
+                double magnitude = Math.max(Math.max(Math.abs(first), Math.abs(last)), additive? k : 0);
+                double tolerance = TOLERANCE*magnitude;
+
+                // Every value is computed from the first one, so that the
+                // rounding errors do not add up, and the last one is reached
+                // up to a relative tolerance
+                for (int i = 0; ; i++) {
+                    double value;
+
+                    switch (operator) {
+                        case '+': value = first + i*k; break;
+                        case '-': value = first - i*k; break;
+                        case 'x': value = first*Math.pow(k, i); break;
+                        default: value = first/Math.pow(k, i);
+                    }
+
+                    if (increasing? value > last + tolerance : value < last - tolerance)
+                        break;
+
+                    add(result, format(value, additive? magnitude : Math.abs(value)));
+                }
+            }
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid sweep range: " + values);
+        }
+
+        return result;
+    }
+
+    // Rejects ranges with an unknown operator, going the wrong way or with an
+    // invalid step. Multiplicative ranges must start and end above 0, or
+    // they would never end
+    private static void checkRange(String values, char operator, boolean backwards, boolean invalidStep) {
+        if ("+-x/".indexOf(operator) < 0 || backwards || invalidStep)
+            throw new IllegalArgumentException("Invalid sweep range: " + values);
+    }
+
+    // Formats a value of a range, rounded to 15 significant digits of the
+    // given magnitude, so that the rounding errors of the steps are hidden
+    private static String format(double value, double magnitude) {
+        int scale = 14 - (int) Math.floor(Math.log10(magnitude));
+
+        return String.valueOf(new BigDecimal(value).setScale(scale, RoundingMode.HALF_EVEN).doubleValue());
+    }
+
+    // Adds a value of a range, unless the sweep would be too large
+    private static void add(List<String> result, String value) {
+        if (result.size() == MAX_CONFIGURATIONS)
+            throw new IllegalArgumentException("Sweeps must have at most " + MAX_CONFIGURATIONS
+                    + " configurations.");
+
+        result.add(value);
+    }
+
+    // Checks whether the string is an integer
+    private static boolean isLong(String string) {
+        try {
+            Long.parseLong(string);
+
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // Prepends the option and its value to the arguments
+    private static String[] prepend(String option, String value, String[] args) {
+        String[] result = new String[args.length + 2];
+        result[0] = option;
+        result[1] = value;
+        System.arraycopy(args, 0, result, 2, args.length);
+
+        return result;
+    }
+}